@@ -0,0 +1,132 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks of the set engine's hot paths: the UtilImpl calls made by the dealer and the players, and the
+ * SetUniverse counting that replaces findSets in the dealer.
+ * Every invocation works on the next of a fixed collection of random tables (dealt from a seeded generator), so the
+ * results don't depend on a single lucky table and are comparable between runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilImplBenchmark {
+
+    /**
+     * The number of random tables cycled through (a power of 2).
+     */
+    private static final int TABLES = 256;
+
+    /**
+     * The deck configuration, as featureSize^featureCount.
+     */
+    @Param({"3^4", "3^5", "4^4", "3^6"})
+    public String deck;
+
+    /**
+     * The number of cards on the table.
+     */
+    @Param({"12", "15", "21"})
+    public int tableSize;
+
+    private Util util;
+    private SetUniverse universe;
+    private List<List<Integer>> tables;
+    private int[][] tableArrays;
+    private int[][] claims;
+    private int deckSize;
+    private int next;
+
+    @Setup
+    public void setup() {
+        String[] sizes = deck.split("\\^");
+        Properties properties = new Properties();
+        properties.setProperty("FeatureSize", sizes[0]);
+        properties.setProperty("FeatureCount", sizes[1]);
+        Logger logger = Logger.getLogger("UtilImplBenchmark");
+        logger.setLevel(Level.OFF);
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        universe = SetUniverse.of(config);
+        deckSize = config.deckSize;
+
+        SplittableRandom random = new SplittableRandom(42);
+        int[] cards = new int[deckSize];
+        Arrays.setAll(cards, card -> card);
+        tables = new ArrayList<>(TABLES);
+        tableArrays = new int[TABLES][];
+        claims = new int[TABLES][];
+        for (int i = 0; i < TABLES; i++) {
+            for (int j = 0; j < tableSize; j++) { // a partial shuffle deals the table
+                int k = j + random.nextInt(deckSize - j);
+                int card = cards[k];
+                cards[k] = cards[j];
+                cards[j] = card;
+            }
+            tableArrays[i] = Arrays.copyOf(cards, tableSize);
+            List<Integer> table = new ArrayList<>(tableSize);
+            for (int card : tableArrays[i]) table.add(card);
+            tables.add(table);
+            // a claim as a player makes it: featureSize cards of the table, a set only now and then
+            claims[i] = Arrays.copyOf(tableArrays[i], config.featureSize);
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (TABLES - 1);
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        return util.cardToFeatures(next() % deckSize);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(tableArrays[next()]);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(claims[next()]);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsOne() {
+        return util.findSets(tables.get(next()), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsAll() {
+        return util.findSets(tables.get(next()), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int universeCountSets() {
+        int[] table = tableArrays[next()];
+        return universe.countSets(table, table.length, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,290 @@
+package bguspl.set;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler writing the records on a background thread, so the logging threads wait neither for the formatting
+ * and the file I/O nor for each other.
+ * Logging threads publish the records to a bounded lock-free ring (a compare-and-set claims an entry), and the writer
+ * thread formats the published records in order and writes them in batches, flushing the output once per batch.
+ * The writer is woken up when the ring is half full and otherwise checks it every few milliseconds.
+ * When the ring is full, a record is handled by the overflow policy: dropped, published once there is room (blocking
+ * the logging thread), or sampled (one of every SAMPLE_RATE overflowing records waits for room, the rest are dropped).
+ * The number of dropped records is written to the log as soon as there is room again.
+ * The handlers still open when the JVM exits are closed by a shutdown hook, so their waiting records are written.
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * What a logging thread does with a record when the ring is full.
+     */
+    public enum Overflow {
+        DROP,
+        BLOCK,
+        SAMPLE
+    }
+
+    /**
+     * One of every SAMPLE_RATE records overflowing the ring is kept under the SAMPLE policy.
+     */
+    static final int SAMPLE_RATE = 16;
+
+    /**
+     * The time the writer waits for records before checking the ring again.
+     */
+    private static final long IDLE_NANOS = 10_000_000;
+
+    /**
+     * A reusable ring entry.
+     */
+    private static final class Entry {
+
+        /**
+         * The sequence of the record held by this entry (set last, when the record is published).
+         */
+        volatile long sequence = -1;
+
+        LogRecord record;
+    }
+
+    private final Entry[] entries;
+
+    /**
+     * Mask used for mapping a sequence into the ring (the ring length is a power of 2).
+     */
+    private final int mask;
+
+    /**
+     * The next sequence to be claimed by a logging thread.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The next sequence to be written (written by the writer thread only).
+     */
+    private volatile long consumed;
+
+    /**
+     * The sequence up to which the records were written and flushed (written by the writer thread only).
+     */
+    private volatile long flushed;
+
+    /**
+     * The records that found the ring full, and the records dropped.
+     */
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile Overflow overflow = Overflow.BLOCK;
+
+    /**
+     * True iff the handler was closed (records published later are dropped).
+     */
+    private volatile boolean closed;
+
+    /**
+     * True iff a logging thread asked to wake up the writer since it last woke up.
+     */
+    private volatile boolean wakeRequested;
+
+    /**
+     * The handlers not closed yet, closed by the shutdown hook.
+     */
+    private static final Set<AsyncHandler> open = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> open.forEach(AsyncHandler::close), "log-close"));
+    }
+
+    private final OutputStream output;
+    private final Writer out;
+    private final Thread writer;
+
+    /**
+     * @param out         - the stream the records are written to (closed when the handler is closed).
+     * @param minCapacity - the minimum number of records the ring holds (rounded up to a power of 2).
+     */
+    public AsyncHandler(OutputStream out, int minCapacity) {
+        int length = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.entries = new Entry[length];
+        for (int i = 0; i < length; i++)
+            entries[i] = new Entry();
+        this.mask = length - 1;
+        this.output = out;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        open.add(this);
+    }
+
+    /**
+     * @return - the stream the records are written to.
+     */
+    OutputStream output() {
+        return output;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Sets the policy for the records overflowing the ring.
+     */
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    /**
+     * @return - the number of records dropped so far.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        boolean decided = false, waits = false;
+        long sequence;
+        while (true) {
+            sequence = next.get();
+            if (sequence - consumed >= entries.length) { // the ring is full
+                if (!decided) {
+                    decided = true;
+                    Overflow policy = overflow;
+                    waits = policy == Overflow.BLOCK
+                            || policy == Overflow.SAMPLE && overflowed.incrementAndGet() % SAMPLE_RATE == 0;
+                }
+                if (!waits || closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                wakeWriter();
+                LockSupport.parkNanos(this, 50_000);
+            }
+            else if (next.compareAndSet(sequence, sequence + 1)) break;
+        }
+        Entry entry = entries[(int) sequence & mask];
+        entry.record = record;
+        entry.sequence = sequence; // making the record visible to the writer
+        if (sequence - consumed >= entries.length / 2)
+            wakeWriter();
+    }
+
+    private void wakeWriter() {
+        wakeRequested = true;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * The writer thread: writes the published records until the handler is closed and the ring is empty.
+     */
+    private void write() {
+        long reported = 0; // the dropped records written to the log
+        while (true) {
+            boolean done = closed; // read before draining, so the records published before closing are written
+            int count = drain();
+            long lost = dropped.get();
+            if (lost > reported) {
+                LogRecord record = new LogRecord(Level.WARNING, (lost - reported) + " log records dropped (the log ring was full)");
+                reported = lost;
+                append(record);
+                count++;
+            }
+            if (count > 0) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    reportError(null, e, ErrorManager.FLUSH_FAILURE);
+                }
+            }
+            flushed = consumed;
+            if (done && next.get() == consumed) return;
+            if (count == 0) {
+                if (!wakeRequested) // checked after draining, so a wake up cannot be missed
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                wakeRequested = false;
+            }
+        }
+    }
+
+    /**
+     * Writes all the records published so far, in sequence order.
+     *
+     * @return - the number of records written.
+     */
+    private int drain() {
+        long sequence = consumed;
+        int count = 0;
+        while (true) {
+            Entry entry = entries[(int) sequence & mask];
+            if (entry.sequence != sequence) break; // not published yet
+            LogRecord record = entry.record;
+            entry.record = null;
+            consumed = ++sequence; // freeing the entry
+            append(record);
+            count++;
+        }
+        return count;
+    }
+
+    private void append(LogRecord record) {
+        try {
+            Formatter formatter = getFormatter();
+            out.write(formatter != null ? formatter.format(record) : String.valueOf(record.getMessage()) + System.lineSeparator());
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    /**
+     * Waits until the records published before the call are written and flushed.
+     */
+    @Override
+    public void flush() {
+        long target = next.get();
+        while (flushed < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(this, 100_000);
+        }
+    }
+
+    /**
+     * Writes the records published before the call and closes the output.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        open.remove(this);
+        wakeWriter();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
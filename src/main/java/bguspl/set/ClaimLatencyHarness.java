@@ -0,0 +1,103 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.ScriptedPlayer;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Measures the claim latency of the real dealer: the time from a player placing the last token of a claim to the
+ * player receiving the dealer's answer.
+ * For every number of players, games of scripted players claiming as fast as they can (without table delays or
+ * freezes) are played back to back for a while, and the throughput and latency percentiles of their claims reported.
+ */
+public class ClaimLatencyHarness {
+
+    /**
+     * The harness's main function.
+     *
+     * @param args - the numbers of players to measure (default 1,2,4,8), the number of seconds to measure each number
+     *             of players (default 10) and the fraction of claims which are sets on the table (default 0.5).
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Main.initLogger("SetClaimLatencyLogger", "latency_");
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+
+        int[] playerCounts = Arrays.stream((args.length > 0 ? args[0] : "1,2,4,8").split(","))
+                .mapToInt(count -> Integer.parseInt(count.trim())).toArray();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        double legalFraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+
+        StringBuilder report = new StringBuilder(String.format("claim latency (last token placed to verdict received),"
+                + " %.0f%% of the claims are sets on the table%n", 100 * legalFraction));
+        for (int players : playerCounts) {
+            report.append(measure(logger, players, seconds, legalFraction));
+            System.out.println(report.substring(report.lastIndexOf("\n", report.length() - 2) + 1).trim());
+        }
+        logger.severe(report.toString());
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+
+    /**
+     * Plays games of the given number of scripted players until the time is up.
+     *
+     * @return - the report line of the player count.
+     */
+    private static String measure(Logger logger, int players, long seconds, double legalFraction) throws InterruptedException {
+        Properties properties = Config.loadProperties("config.properties", logger);
+        Tournament.headless(properties, players);
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        GameRandom seeds = new GameRandom(logger, config);
+
+        long[] latencies = new long[0];
+        int[] verdicts = new int[3];
+        int games = 0;
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            Env env = new Env(logger, config, new HeadlessUserInterface(), util, new GameRandom(logger, seeds.split().nextLong()));
+            Game game = new Game(env, new Player[players],
+                    (e, dealer, table, id) -> new ScriptedPlayer(e, dealer, table, id, legalFraction));
+            Thread dealer = game.start();
+            dealer.join(Math.max(1, (end - System.nanoTime()) / 1_000_000));
+            game.terminate(); // the time is up (or the game already ended)
+            game.join();
+            games++;
+            for (Player player : game.players) {
+                ScriptedPlayer scripted = (ScriptedPlayer) player;
+                long[] playerLatencies = scripted.getLatencies();
+                int from = latencies.length;
+                latencies = Arrays.copyOf(latencies, from + playerLatencies.length);
+                System.arraycopy(playerLatencies, 0, latencies, from, playerLatencies.length);
+                int[] playerVerdicts = scripted.getVerdicts();
+                for (int i = 0; i < verdicts.length; i++)
+                    verdicts[i] += playerVerdicts[i];
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        return String.format("%d players: %d claims in %d games, %.0f claims/s (%d points, %d penalties, %d irrelevant),"
+                        + " latency p50 %.1fus, p99 %.1fus, p99.9 %.1fus, max %.1fus%n",
+                players, latencies.length, games, latencies.length / elapsed, verdicts[0], verdicts[1], verdicts[2],
+                percentile(latencies, 0.5) / 1e3, percentile(latencies, 0.99) / 1e3, percentile(latencies, 0.999) / 1e3,
+                percentile(latencies, 1) / 1e3);
+    }
+
+    /**
+     * @return - the value at the given fraction of the sorted values (0 if there are none).
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
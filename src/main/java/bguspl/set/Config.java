@@ -15,6 +15,20 @@ import java.util.logging.Logger;
  */
 public class Config {
 
+    /**
+     * The log file rotation: the size (bytes) and the age (milliseconds) after which the log file is rotated (0 for no
+     * limit), the number of rotated segments kept (0 for all) and whether the rotated segments are compressed
+     */
+    public final long logMaxBytes;
+    public final long logRotationMillis;
+    public final int logRetention;
+    public final boolean logCompress;
+
+    /**
+     * True iff every game of a tournament or a server writes to its own log file
+     */
+    public final boolean logPerGame;
+
     /**
      * Random spin cycles for Config::randomSpin (for debugging / testing)
      */
@@ -51,6 +65,24 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * How the dealer chooses the cards to deal: "random", "constructive" (random, but ensuring a set on the table
+     * whenever the deck allows it) or "targeted" (aiming for a number of sets on the table between targetSetsMin and
+     * targetSetsMax). Random by default.
+     */
+    public final String dealMode;
+
+    /**
+     * The range of the number of sets on the table aimed for by the targeted deal mode
+     */
+    public final int targetSetsMin;
+    public final int targetSetsMax;
+
+    /**
+     * The maximum number of milliseconds the targeted deal mode spends searching for cards on every deal
+     */
+    public final long dealBudgetMillis;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -86,6 +118,58 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The seed of the game's random numbers, for reproducing a game (0 for a random seed, which is logged)
+     */
+    public final long randomSeed;
+
+    /**
+     * The number of milliseconds the dealer holds a claim for claims placed earlier but arriving later (0 for none)
+     */
+    public final long claimFairnessWindowMillis;
+
+    /**
+     * The number of threads validating claims in parallel (0 for validating all claims on the dealer thread)
+     */
+    public final int claimValidationThreads;
+
+    /**
+     * True iff the dealer, player and AI threads should be virtual threads (ThreadMode=virtual, requires Java 21)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * True iff the game runs on a simulated clock, skipping the time in which all threads only wait (ClockMode=simulated)
+     */
+    public final boolean simulatedClock;
+
+    /**
+     * The real time the simulated clock gives the threads to react before skipping to the next wake-up
+     */
+    public final long simulatedClockPauseNanos;
+
+    /**
+     * The localhost port of the HTTP endpoint serving the metrics and the health check (0 for none)
+     */
+    public final int metricsPort;
+
+    /**
+     * The time without a dealer loop iteration (or a verdict for a waiting player) after which the game is considered
+     * stalled: reported by the health check and dumped to the logs directory by the watchdog (0, the default, for no
+     * stall detection)
+     */
+    public final long dealerStallMillis;
+
+    /**
+     * True iff every game writes a binary journal of its events to the logs directory (for replaying the game)
+     */
+    public final boolean journal;
+
+    /**
+     * The properties this configuration was read from (written to the game journals)
+     */
+    private final Properties properties;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -107,6 +191,16 @@ public class Config {
      */
     public final int tableSize;
 
+    /**
+     * The number of extra slots for cards added when there is no set on the table (0 for reshuffling instead)
+     */
+    public final int extraSlots;
+
+    /**
+     * The total number of slots on the table, including the extra slots
+     */
+    public final int maxTableSize;
+
     /**
      * The width (in pixels) of each cell
      */
@@ -138,6 +232,7 @@ public class Config {
      * 1. This should correspond to the number of human players and the dimensions of the table card grid (i.e. the
      * first n codes are for the first row, the 2nd n codes are for the 2nd row etc., n being the number of columns).
      * 2. If the number of entries here does not match the number of human players a warning will be issued
+     * 3. Slots without a key (e.g. extra slots the key list doesn't cover) have the code -1
      */
     private final int[][] playerKeys;
 
@@ -155,7 +250,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -184,8 +279,16 @@ public class Config {
 
         // logger settings
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
-        String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
-        Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        String logFormat = properties.getProperty("LogFormat", GameLogFormatter.DEFAULT_FORMAT);
+        AsyncHandler.Overflow logOverflow = AsyncHandler.Overflow.valueOf(
+                properties.getProperty("LogOverflow", "block").trim().toUpperCase());
+        Main.setLoggerLevelAndFormat(logger, logLevel, logFormat, logOverflow);
+        logMaxBytes = (long) (Double.parseDouble(properties.getProperty("LogMaxMegabytes", "64")) * 1_000_000.0);
+        logRotationMillis = (long) (Double.parseDouble(properties.getProperty("LogRotationMinutes", "0")) * 60_000.0);
+        logRetention = Integer.parseInt(properties.getProperty("LogRetention", "10"));
+        logCompress = Boolean.parseBoolean(properties.getProperty("LogCompress", "True"));
+        logPerGame = Boolean.parseBoolean(properties.getProperty("LogPerGame", "False"));
+        Main.setLoggerRotation(logger, logMaxBytes, logRotationMillis, logRetention, logCompress);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -203,6 +306,14 @@ public class Config {
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
 
+        dealMode = properties.getProperty("DealMode", "random").trim().toLowerCase();
+        if (!dealMode.equals("random") && !dealMode.equals("constructive") && !dealMode.equals("targeted"))
+            logger.severe("warning: unknown deal mode " + dealMode + ", dealing randomly.");
+        targetSetsMin = Integer.parseInt(properties.getProperty("TargetSetsMin", "1"));
+        targetSetsMax = Integer.parseInt(properties.getProperty("TargetSetsMax", "2"));
+        if (targetSetsMin < 1 || targetSetsMax < targetSetsMin)
+            logger.severe("invalid target sets: max: " + targetSetsMax + " min: " + targetSetsMin);
+        dealBudgetMillis = (long) (Double.parseDouble(properties.getProperty("DealBudgetSeconds", "0.005")) * 1000.0);
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
@@ -210,6 +321,16 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        randomSeed = Long.parseLong(properties.getProperty("RandomSeed", "0"));
+        claimFairnessWindowMillis = (long) (Double.parseDouble(properties.getProperty("ClaimFairnessWindowSeconds", "0")) * 1000.0);
+        claimValidationThreads = Integer.parseInt(properties.getProperty("ClaimValidationThreads", "0"));
+        virtualThreads = properties.getProperty("ThreadMode", "platform").trim().equalsIgnoreCase("virtual");
+        simulatedClock = properties.getProperty("ClockMode", "real").trim().equalsIgnoreCase("simulated");
+        simulatedClockPauseNanos = (long) (Double.parseDouble(properties.getProperty("SimulatedClockPauseSeconds", "0.0002")) * 1e9);
+        metricsPort = Integer.parseInt(properties.getProperty("MetricsPort", "0"));
+        dealerStallMillis = (long) (Double.parseDouble(properties.getProperty("DealerStallSeconds", "0")) * 1000.0);
+        journal = Boolean.parseBoolean(properties.getProperty("Journal", "False"));
+        this.properties = (Properties) properties.clone();
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -219,6 +340,8 @@ public class Config {
         rows = Integer.parseInt(properties.getProperty("Rows", "3"));
         columns = Integer.parseInt(properties.getProperty("Columns", "4"));
         tableSize = rows * columns;
+        extraSlots = Integer.parseInt(properties.getProperty("ExtraSlots", "0"));
+        maxTableSize = tableSize + extraSlots;
         cellWidth = Integer.parseInt(properties.getProperty("CellWidth", "258"));
         cellHeight = Integer.parseInt(properties.getProperty("CellHeight", "167"));
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
@@ -226,21 +349,29 @@ public class Config {
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
 
         // keyboard input data
-        playerKeys = new int[players][rows * columns];
+        playerKeys = new int[players][maxTableSize];
         for (int i = 0; i < players; i++) {
+            Arrays.fill(playerKeys[i], -1); // no key (rather than key code 0) for the slots the list doesn't cover
             String defaultCodes = "";
             if (i < 2) defaultCodes = playerKeysDefaults[i];
             String playerKeysString = properties.getProperty("PlayerKeys" + (i + 1), defaultCodes);
             if (playerKeysString.length() > 0) {
                 String[] codes = playerKeysString.split(",");
-                if (codes.length != tableSize)
+                if (codes.length != tableSize && codes.length != maxTableSize)
                     logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") mismatch table size (" + tableSize + ").");
-                for (int j = 0; j < Math.min(codes.length, tableSize); ++j) // parse the key codes string
+                for (int j = 0; j < Math.min(codes.length, maxTableSize); ++j) // parse the key codes string
                     playerKeys[i][j] = Integer.parseInt(codes[j]);
             }
         }
     }
 
+    /**
+     * @return - a copy of the properties this configuration was read from.
+     */
+    public Properties properties() {
+        return (Properties) properties.clone();
+    }
+
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
@@ -0,0 +1,227 @@
+package bguspl.set;
+
+import bguspl.set.ex.ArenaEngine;
+import bguspl.set.ex.GameArena;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Monte-Carlo analysis of the set density of a deck and table configuration.
+ * Deals many random boards (tableSize distinct cards of a full deck) and counts their sets, and plays many games in a
+ * GameArena to count the reshuffles of the table. The work is split between threads, each with its own random stream
+ * split from the configured seed and its own summaries, which are merged at the end.
+ */
+public class DeckStatistics {
+
+    /**
+     * The number of games played in an arena at once (bounding the memory of a thread).
+     */
+    private static final int ARENA_GAMES = 1 << 16;
+
+    /**
+     * A streaming summary of non negative integer samples: exact counts per value, so percentiles are exact and the
+     * memory is bounded by the largest value rather than by the number of samples.
+     */
+    static class Histogram {
+        private long[] counts = new long[16];
+        private long total;
+        private long sum;
+
+        void add(int value) {
+            if (value >= counts.length)
+                counts = Arrays.copyOf(counts, Math.max(value + 1, 2 * counts.length));
+            counts[value]++;
+            total++;
+            sum += value;
+        }
+
+        void merge(Histogram other) {
+            if (other.counts.length > counts.length)
+                counts = Arrays.copyOf(counts, other.counts.length);
+            for (int value = 0; value < other.counts.length; value++)
+                counts[value] += other.counts[value];
+            total += other.total;
+            sum += other.sum;
+        }
+
+        long total() {
+            return total;
+        }
+
+        long count(int value) {
+            return value < counts.length ? counts[value] : 0;
+        }
+
+        double mean() {
+            return total == 0 ? 0 : (double) sum / total;
+        }
+
+        /**
+         * @return - the smallest value such that at least the given fraction of the samples are not larger.
+         */
+        int percentile(double fraction) {
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int value = 0; value < counts.length; value++)
+                if ((seen += counts[value]) >= rank) return value;
+            return max();
+        }
+
+        int max() {
+            for (int value = counts.length - 1; value > 0; value--)
+                if (counts[value] > 0) return value;
+            return 0;
+        }
+    }
+
+    /**
+     * The summaries of one thread's share of the work.
+     */
+    private static class Sample {
+        final Histogram boardSets = new Histogram();
+        final Histogram reshuffles = new Histogram();
+        final Histogram gameSets = new Histogram();
+
+        void merge(Sample other) {
+            boardSets.merge(other.boardSets);
+            reshuffles.merge(other.reshuffles);
+            gameSets.merge(other.gameSets);
+        }
+    }
+
+    /**
+     * The statistics tool's main function.
+     *
+     * @param args - the number of random boards (default 100,000,000), the number of games (default 100,000), the
+     *             number of threads (default the number of cores), followed by any number of Key=Value overrides of
+     *             config.properties (e.g. FeatureSize=4 Rows=4).
+     */
+    public static void main(String[] args) {
+        Logger logger = Main.initLogger("SetStatisticsLogger", "statistics_");
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+
+        Properties properties = Config.loadProperties("config.properties", logger);
+        List<String> counts = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) counts.add(arg);
+            else properties.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+        }
+        long boards = counts.size() > 0 ? Long.parseLong(counts.get(0)) : 100_000_000L;
+        int games = counts.size() > 1 ? Integer.parseInt(counts.get(1)) : 100_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = counts.size() > 2 ? Integer.parseInt(counts.get(2)) : cores;
+
+        Tournament.headless(properties, 0);
+        Config config = new Config(logger, properties);
+        SetUniverse universe = SetUniverse.of(config);
+        GameRandom seeds = new GameRandom(logger, config);
+        if (config.tableSize > Long.SIZE && games > 0) { // the arena keeps the tokens as bit masks of slots
+            logger.warning("games are not played on tables of more than " + Long.SIZE + " slots.");
+            games = 0;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<ForkJoinTask<Sample>> tasks = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) { // an even share of the boards and games for every thread
+            long threadBoards = boards / threads + (i < boards % threads ? 1 : 0);
+            int threadGames = games / threads + (i < games % threads ? 1 : 0);
+            SplittableRandom random = seeds.split();
+            tasks.add(pool.submit(() -> sample(universe, config.tableSize, threadBoards, threadGames, random)));
+        }
+        Sample sample = new Sample();
+        for (ForkJoinTask<Sample> task : tasks)
+            sample.merge(task.join());
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        String report = report(config, sample, elapsedNanos, threads);
+        System.out.println(report);
+        logger.severe(report);
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+
+    /**
+     * Deals random boards and plays games on the calling thread.
+     */
+    private static Sample sample(SetUniverse universe, int tableSize, long boards, int games, SplittableRandom random) {
+        Sample sample = new Sample();
+        SetCounter counter = new SetCounter(universe);
+        int[] deck = new int[universe.deckSize()];
+        Arrays.setAll(deck, card -> card);
+        int size = Math.min(tableSize, deck.length);
+        for (long board = 0; board < boards; board++) {
+            for (int i = 0; i < size; i++) { // a partial shuffle draws the board's cards
+                int j = i + random.nextInt(deck.length - i);
+                int card = deck[j];
+                deck[j] = deck[i];
+                deck[i] = card;
+            }
+            counter.clear();
+            for (int i = 0; i < size; i++)
+                counter.add(deck[i]);
+            sample.boardSets.add(counter.sets());
+        }
+
+        if (games == 0) return sample;
+        // the turn never times out, so the table is returned to the deck only when it has no set
+        GameArena arena = new GameArena(Math.min(games, ARENA_GAMES), universe.deckSize(), tableSize, 2);
+        ArenaEngine engine = new ArenaEngine(arena, universe, 1, Integer.MAX_VALUE);
+        for (int played = 0; played < games; played += arena.games()) {
+            int batch = Math.min(arena.games(), games - played);
+            for (int game = 0; game < batch; game++)
+                engine.start(game, random.nextLong());
+            engine.run(0, batch, Integer.MAX_VALUE);
+            for (int game = 0; game < batch; game++) {
+                sample.reshuffles.add(arena.reshuffles(game));
+                sample.gameSets.add(arena.sets(game));
+            }
+        }
+        return sample;
+    }
+
+    private static String report(Config config, Sample sample, long elapsedNanos, int threads) {
+        double seconds = elapsedNanos / 1e9;
+        Histogram boardSets = sample.boardSets;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("deck of %d cards (%d features of size %d), table of %d slots (%dx%d), %d threads, %.2fs%n",
+                config.deckSize, config.featureCount, config.featureSize, config.tableSize, config.rows, config.columns,
+                threads, seconds));
+
+        long boards = boardSets.total();
+        if (boards > 0) {
+            double noSet = (double) boardSets.count(0) / boards;
+            report.append(String.format("%d random boards (%.2fM boards/s): P(no set) %.6f (+-%.6f), sets per board %s%n",
+                    boards, boards / seconds / 1e6, noSet, 1.96 * Math.sqrt(noSet * (1 - noSet) / boards),
+                    summary(boardSets)));
+            report.append("sets per board:");
+            for (int sets = 0; sets <= boardSets.max(); sets++)
+                if (boardSets.count(sets) > 0)
+                    report.append(String.format(" %d:%.3g%%", sets, 100.0 * boardSets.count(sets) / boards));
+            report.append(String.format("%n"));
+        }
+
+        Histogram reshuffles = sample.reshuffles;
+        if (reshuffles.total() > 0)
+            report.append(String.format("%d games: P(reshuffle) %.4f, reshuffles per game %s, sets per game %s",
+                    reshuffles.total(), 1 - (double) reshuffles.count(0) / reshuffles.total(), summary(reshuffles),
+                    summary(sample.gameSets)));
+        return report.toString();
+    }
+
+    private static String summary(Histogram histogram) {
+        return String.format("mean %.3f, p50 %d, p90 %d, p99 %d, p99.9 %d, max %d", histogram.mean(),
+                histogram.percentile(0.5), histogram.percentile(0.9), histogram.percentile(0.99),
+                histogram.percentile(0.999), histogram.max());
+    }
+}
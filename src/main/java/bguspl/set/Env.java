@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 public class Env {
@@ -8,11 +9,46 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameThreadFactory threads;
+    public final GameRandom random;
+    public final SetUniverse universe;
+    public final GameClock clock;
+
+    /**
+     * The metrics of the game (exposed through JMX while the game runs).
+     */
+    public final Metrics metrics;
+
+    /**
+     * Threads validating set claims shared by several games (null if every dealer creates its own, if needed).
+     */
+    public final ExecutorService claimValidators;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new GameRandom(logger, config));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameRandom random) {
+        this(logger, config, ui, util, new GameThreadFactory(logger, config), random, null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameThreadFactory threads, GameRandom random,
+               ExecutorService claimValidators) {
+        this(logger, config, ui, util, threads, random, claimValidators,
+                config.simulatedClock ? new SimulatedClock(config.simulatedClockPauseNanos) : new RealTimeClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameThreadFactory threads, GameRandom random,
+               ExecutorService claimValidators, GameClock clock) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.threads = threads;
+        this.random = random;
+        this.claimValidators = claimValidators;
+        this.universe = SetUniverse.of(config);
+        this.clock = clock;
+        this.metrics = new Metrics();
     }
 }
@@ -0,0 +1,108 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+/**
+ * A single game: the table, the dealer and the players of one game environment.
+ * Games share no state, so any number of them can run in the same JVM.
+ */
+public class Game {
+
+    /**
+     * Creates the players of a game.
+     */
+    public interface PlayerFactory {
+
+        /**
+         * @param id - the id of the player (starting from 0).
+         * @return - the player.
+         */
+        Player create(Env env, Dealer dealer, Table table, int id);
+    }
+
+    /**
+     * The game environment object.
+     */
+    public final Env env;
+
+    /**
+     * Game entities.
+     */
+    public final Table table;
+    public final Dealer dealer;
+    public final Player[] players;
+
+    /**
+     * The dealer thread (null until the game is started, or if the dealer runs on the caller's thread).
+     */
+    private Thread dealerThread;
+
+    /**
+     * Creates the game entities.
+     *
+     * @param env     - the game environment.
+     * @param players - the array to fill with the players (shared with the user interface).
+     */
+    public Game(Env env, Player[] players) {
+        this(env, players, (e, dealer, table, id) -> new Player(e, dealer, table, id, id < e.config.humanPlayers));
+    }
+
+    /**
+     * Creates the game entities, with players created by the given factory.
+     *
+     * @param env     - the game environment.
+     * @param players - the array to fill with the players (shared with the user interface).
+     * @param factory - creates the players.
+     */
+    public Game(Env env, Player[] players, PlayerFactory factory) {
+        this.env = env;
+        this.table = new Table(env);
+        this.dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = factory.create(env, dealer, table, i);
+        this.players = players;
+    }
+
+    public Game(Env env) {
+        this(env, new Player[env.config.players]);
+    }
+
+    /**
+     * Starts the dealer thread.
+     *
+     * @return - the dealer thread.
+     */
+    public Thread start() {
+        dealerThread = env.threads.newThread(dealer, "dealer");
+        ThreadLogger.logStart(env.logger, dealerThread.getName());
+        dealerThread.start();
+        return dealerThread;
+    }
+
+    /**
+     * Waits until a started game ends.
+     */
+    public void join() throws InterruptedException {
+        try {
+            dealerThread.join();
+        } finally {
+            ThreadLogger.logStop(env.logger, dealerThread.getName());
+        }
+    }
+
+    /**
+     * Plays the whole game, running the dealer on the calling thread.
+     */
+    public void run() {
+        dealer.run();
+    }
+
+    /**
+     * Ends the game due to an external event.
+     */
+    public void terminate() {
+        dealer.terminate();
+    }
+}
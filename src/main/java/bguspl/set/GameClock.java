@@ -0,0 +1,31 @@
+package bguspl.set;
+
+/**
+ * The source of time of a game: the countdown, freezes, table delays and the dealer's waits all run on it.
+ * The real-time clock follows the system clock, the simulated clock skips the time in which all the game's threads
+ * are only waiting, so a whole game can be played in a fraction of its real duration.
+ */
+public interface GameClock {
+
+    /**
+     * @return - the current time in milliseconds (like System.currentTimeMillis()).
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the given time (like Thread.sleep).
+     *
+     * @param millis - the time to sleep (returns at once if not positive).
+     * @throws InterruptedException - if the sleeping thread was interrupted.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Parks the current thread for up to the given time (like LockSupport.parkNanos). The thread may return early, when
+     * it is unparked, interrupted or spuriously, so callers recheck their condition.
+     *
+     * @param blocker - the object the thread is waiting for.
+     * @param millis  - the maximum time to park.
+     */
+    void park(Object blocker, long millis);
+}
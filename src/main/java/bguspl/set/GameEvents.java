@@ -0,0 +1,64 @@
+package bguspl.set;
+
+/**
+ * Emits the game actions as Java Flight Recorder events, so a recording of a slow game shows its causes (claims,
+ * deals, freezes and set searches) next to the GC and lock events of the JVM. Record with
+ * -XX:StartFlightRecording=filename=game.jfr (the events are in the "Set Game" category).
+ * The events are emitted only while a recording enables them, and never on a JVM without Flight Recorder, so the
+ * calls cost a branch otherwise. The durations are measured by the callers (which time these actions anyway).
+ */
+public final class GameEvents {
+
+    /**
+     * True iff the JVM has Flight Recorder (the event classes may be loaded).
+     */
+    private static final boolean AVAILABLE = available();
+
+    private GameEvents() {
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event", false, GameEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * A claim answered by the dealer.
+     *
+     * @param claim           - the sequence of the claim.
+     * @param validationNanos - the time spent validating the claim.
+     * @param latencyNanos    - the time from the claim to its verdict.
+     */
+    public static void claimVerdict(long claim, int player, Enum<?> verdict, long validationNanos, long latencyNanos) {
+        if (AVAILABLE) JfrEvents.claimVerdict(claim, player, verdict.name(), validationNanos, latencyNanos);
+    }
+
+    /**
+     * Cards dealt to the table ("deal") or returned to the deck ("return").
+     *
+     * @param delayNanos - the time spent moving the cards.
+     */
+    public static void tableChange(String action, int cards, long delayNanos) {
+        if (AVAILABLE) JfrEvents.tableChange(action, cards, delayNanos);
+    }
+
+    /**
+     * A player frozen after a verdict.
+     *
+     * @param frozenMillis - the time the player was frozen, on the game clock.
+     */
+    public static void freeze(int player, Enum<?> verdict, long requestedMillis, long frozenMillis) {
+        if (AVAILABLE) JfrEvents.freeze(player, verdict.name(), requestedMillis, frozenMillis);
+    }
+
+    /**
+     * A search for sets.
+     */
+    public static void findSets(int cards, int requested, int found, long elapsedNanos) {
+        if (AVAILABLE) JfrEvents.findSets(cards, requested, found, elapsedNanos);
+    }
+}
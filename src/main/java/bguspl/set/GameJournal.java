@@ -0,0 +1,566 @@
+package bguspl.set;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * A compact, append-only binary journal of the events of a game: the deals, the cards placed, removed and moved, the
+ * tokens placed and removed, the claims and their verdicts, the freezes, the scores, the countdown resets and updates,
+ * the dealer's wake-ups and the winners. Together with the seed and the configuration written in its header, it is
+ * enough to replay the game.
+ * A record is a type byte, the game clock time since the previous record and the values of the event, all encoded as
+ * zigzag varints (a token event usually takes 5 to 7 bytes). The journal file is memory-mapped in chunks of CHUNK bytes,
+ * so appending a record is a few stores into the mapping (no system call, no allocation); the file is truncated to its
+ * length when the journal is closed, and a journal left unclosed by a crash reads up to the zeros after its last record.
+ * Not thread safe, meant to be written by a single thread (the dealer thread).
+ */
+public class GameJournal implements Closeable {
+
+    /**
+     * The record types (0 marks the end of the records).
+     */
+    public static final int DEAL = 1; // the number of cards in the deck before dealing
+    public static final int CARD_PLACED = 2; // slot, card
+    public static final int CARD_REMOVED = 3; // slot, card
+    public static final int CARD_MOVED = 4; // from slot, to slot
+    public static final int TOKEN_PLACED = 5; // player, slot, card on the slot when the dealer got the event (-1 for none)
+    public static final int TOKEN_REMOVED = 6; // player, slot, card on the slot when the dealer got the event (-1 for none)
+    public static final int CLAIM = 7; // player, slots
+    public static final int VERDICT = 8; // player, verdict (the ordinal of Player.Verdict)
+    public static final int FREEZE = 9; // player, milliseconds
+    public static final int SCORE = 10; // player, score
+    public static final int COUNTDOWN_RESET = 11; // milliseconds
+    public static final int END = 12; // winners
+    public static final int COUNTDOWN = 13; // the milliseconds left, when the dealer updated the countdown
+    public static final int WAKE = 14; // the dealer woke up (before its countdown update and player events, if any)
+
+    /**
+     * The names of the record types and of their values (the last value of a claim and of the end is a list).
+     */
+    private static final String[] NAMES = {null, "deal", "card placed", "card removed", "card moved", "token placed",
+            "token removed", "claim", "verdict", "freeze", "score", "countdown reset", "end",
+            "countdown", "wake"};
+    private static final String[][] FIELDS = {null, {"deck"}, {"slot", "card"}, {"slot", "card"}, {"from", "to"},
+            {"player", "slot", "card"}, {"player", "slot", "card"}, {"player", "slots"}, {"player", "verdict"},
+            {"player", "millis"}, {"player", "score"}, {"millis"}, {"winners"}, {"millis"}, {}};
+    private static final boolean[] LISTS = {false, false, false, false, false, false, false, true, false, false, false,
+            false, true, false, false};
+
+    private static final byte[] MAGIC = {'S', 'E', 'T', 'J'};
+    private static final int VERSION = 2;
+
+    /**
+     * The size of the chunks of the journal file mapped at once.
+     */
+    static final int CHUNK = 1 << 20;
+
+    /**
+     * A journal recording nothing, for games without a journal.
+     */
+    public static final GameJournal DISABLED = new GameJournal(null, null, 0);
+
+    private final GameClock clock;
+
+    /**
+     * The buffer the records are appended to (null once the journal is closed or failed).
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The game clock time of the last record.
+     */
+    private long lastMillis;
+
+    /**
+     * The error that stopped the journal (null if none).
+     */
+    private IOException failure;
+
+    /**
+     * @param clock       - the clock the records are timed with.
+     * @param buffer      - the buffer the records are appended to (null for a journal recording nothing).
+     * @param startMillis - the game clock time the first record is timed from.
+     */
+    protected GameJournal(GameClock clock, ByteBuffer buffer, long startMillis) {
+        this.clock = clock;
+        this.buffer = buffer;
+        this.lastMillis = startMillis;
+    }
+
+    /**
+     * Creates a journal file and writes its header.
+     *
+     * @param file   - the journal file (replaced if it exists).
+     * @param seed   - the seed of the game.
+     * @param config - the properties of the game's configuration.
+     */
+    public static GameJournal open(File file, GameClock clock, long seed, Properties config) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            long startMillis = clock.currentTimeMillis();
+            byte[] header = header(seed, startMillis, config);
+            channel.truncate(0);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(CHUNK, 2L * header.length));
+            buffer.put(header);
+            return new Mapped(channel, clock, buffer, startMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A journal appending to a memory-mapped file.
+     */
+    private static final class Mapped extends GameJournal {
+
+        private final FileChannel channel;
+
+        /**
+         * The position of the current mapping in the file.
+         */
+        private long offset;
+
+        Mapped(FileChannel channel, GameClock clock, ByteBuffer buffer, long startMillis) {
+            super(clock, buffer, startMillis);
+            this.channel = channel;
+        }
+
+        @Override
+        protected ByteBuffer extend(ByteBuffer buffer, int bytes) throws IOException {
+            offset += buffer.position();
+            return channel.map(FileChannel.MapMode.READ_WRITE, offset, Math.max(CHUNK, bytes));
+        }
+
+        @Override
+        protected void closed(ByteBuffer buffer) throws IOException {
+            try {
+                if (buffer != null) channel.truncate(offset + buffer.position());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @return - the header of a journal: the magic bytes, the version, the seed, the start time and the configuration.
+     */
+    private static byte[] header(long seed, long startMillis, Properties config) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        config.store(text, null);
+        byte[] properties = text.toByteArray();
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + 3 * 10 + properties.length);
+        header.put(MAGIC).put((byte) VERSION);
+        putVarint(header, seed);
+        putVarint(header, startMillis);
+        putVarint(header, properties.length);
+        header.put(properties);
+        return Arrays.copyOf(header.array(), header.position());
+    }
+
+    /**
+     * Makes room for more records when the buffer is full (the default doubles a heap buffer).
+     *
+     * @param buffer - the full buffer.
+     * @param bytes  - the minimum room needed.
+     * @return - the buffer to append to from now on.
+     */
+    protected ByteBuffer extend(ByteBuffer buffer, int bytes) throws IOException {
+        ByteBuffer extended = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+        buffer.flip();
+        return extended.put(buffer);
+    }
+
+    /**
+     * Called after a record was appended.
+     *
+     * @param buffer - the buffer the record was appended to.
+     * @param start  - the position of the record in the buffer.
+     */
+    protected void recorded(ByteBuffer buffer, int start) {
+    }
+
+    /**
+     * Called when the journal is closed.
+     *
+     * @param buffer - the buffer the records were appended to (null if the journal failed).
+     */
+    protected void closed(ByteBuffer buffer) throws IOException {
+    }
+
+    /**
+     * Starts a record of the current time.
+     */
+    private int begin(int type, int values) {
+        return buffer == null ? -1 : begin(type, values, clock.currentTimeMillis());
+    }
+
+    /**
+     * Starts a record: makes room for it and appends its type and time.
+     *
+     * @param values - the number of values of the record.
+     * @param now    - the time of the record.
+     * @return - the position of the record in the buffer, -1 if the journal records nothing (disabled, closed or failed).
+     */
+    private int begin(int type, int values, long now) {
+        if (buffer == null) return -1;
+        int bytes = 1 + 10 + 5 * values;
+        if (buffer.remaining() < bytes) {
+            try {
+                buffer = extend(buffer, bytes);
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                buffer = null; // stopping, the records so far are kept
+                return -1;
+            }
+        }
+        int start = buffer.position();
+        buffer.put((byte) type);
+        putVarint(buffer, now - lastMillis);
+        lastMillis = now;
+        return start;
+    }
+
+    private void record(int type) {
+        int start = begin(type, 0);
+        if (start < 0) return;
+        recorded(buffer, start);
+    }
+
+    private void record(int type, long a) {
+        int start = begin(type, 1);
+        if (start < 0) return;
+        putVarint(buffer, a);
+        recorded(buffer, start);
+    }
+
+    private void record(int type, int a, int b) {
+        int start = begin(type, 2);
+        if (start < 0) return;
+        putVarint(buffer, a);
+        putVarint(buffer, b);
+        recorded(buffer, start);
+    }
+
+    /**
+     * Records a value followed by a list.
+     */
+    private void record(int type, int value, int[] list) {
+        int start = begin(type, 2 + list.length);
+        if (start < 0) return;
+        putVarint(buffer, value);
+        putList(list);
+        recorded(buffer, start);
+    }
+
+    /**
+     * Records a list.
+     */
+    private void record(int type, int[] list) {
+        int start = begin(type, 1 + list.length);
+        if (start < 0) return;
+        putList(list);
+        recorded(buffer, start);
+    }
+
+    private void putList(int[] list) {
+        putVarint(buffer, list.length);
+        for (int value : list)
+            putVarint(buffer, value);
+    }
+
+    /**
+     * Records a deal.
+     *
+     * @param deck - the number of cards in the deck before dealing.
+     */
+    public void deal(int deck) {
+        record(DEAL, deck);
+    }
+
+    public void cardPlaced(int slot, int card) {
+        record(CARD_PLACED, slot, card);
+    }
+
+    public void cardRemoved(int slot, int card) {
+        record(CARD_REMOVED, slot, card);
+    }
+
+    public void cardMoved(int from, int to) {
+        record(CARD_MOVED, from, to);
+    }
+
+    /**
+     * Records a token placed or removed by a player, as handled by the dealer.
+     *
+     * @param card   - the card on the slot when the dealer handled the event (-1 if none).
+     * @param placed - true for a token placement, false for a token removal.
+     */
+    public void token(int player, int slot, int card, boolean placed) {
+        int start = begin(placed ? TOKEN_PLACED : TOKEN_REMOVED, 3);
+        if (start < 0) return;
+        putVarint(buffer, player);
+        putVarint(buffer, slot);
+        putVarint(buffer, card);
+        recorded(buffer, start);
+    }
+
+    public void claim(int player, int[] slots) {
+        record(CLAIM, player, slots);
+    }
+
+    /**
+     * @param verdict - the ordinal of the verdict.
+     */
+    public void verdict(int player, int verdict) {
+        record(VERDICT, player, verdict);
+    }
+
+    public void freeze(int player, long millis) {
+        record(FREEZE, player, (int) Math.min(millis, Integer.MAX_VALUE));
+    }
+
+    public void score(int player, int score) {
+        record(SCORE, player, score);
+    }
+
+    /**
+     * Records a reset of the countdown at the time the dealer read (the countdown counts from it).
+     *
+     * @param now - the time of the reset.
+     */
+    public void countdownReset(long millis, long now) {
+        int start = begin(COUNTDOWN_RESET, 1, now);
+        if (start < 0) return;
+        putVarint(buffer, millis);
+        recorded(buffer, start);
+    }
+
+    /**
+     * Records an update of the countdown, so a replay wakes the dealer up when it did (the countdown is counted down
+     * by the dealer's wake-ups).
+     *
+     * @param millis - the time left (negative once the countdown expired).
+     */
+    public void countdown(long millis) {
+        record(COUNTDOWN, millis);
+    }
+
+    /**
+     * Records a wake-up of the dealer that updated the countdown or got player events (journaled after it), so a replay
+     * wakes the dealer up when it did and hands it the player events it got at once.
+     */
+    public void wake() {
+        record(WAKE);
+    }
+
+    public void end(int[] winners) {
+        record(END, winners);
+    }
+
+    /**
+     * @return - the error that stopped the journal, or null if none.
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Closes the journal, truncating its file to the records written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this == DISABLED) return;
+        ByteBuffer last = buffer;
+        buffer = null;
+        closed(last);
+    }
+
+    /**
+     * Appends a zigzag varint: 7 bits per byte, the least significant first, small magnitudes (of either sign) first.
+     */
+    private static void putVarint(ByteBuffer buffer, long value) {
+        long bits = (value << 1) ^ (value >> 63);
+        while ((bits & ~0x7FL) != 0) {
+            buffer.put((byte) (bits & 0x7F | 0x80));
+            bits >>>= 7;
+        }
+        buffer.put((byte) bits);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long bits = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            bits |= (long) (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    /**
+     * A record of the journal.
+     */
+    public static final class Event {
+
+        public final int type;
+
+        /**
+         * The game clock time of the event.
+         */
+        public final long millis;
+
+        private final int[] values;
+
+        public Event(int type, long millis, int... values) {
+            this.type = type;
+            this.millis = millis;
+            this.values = values;
+        }
+
+        /**
+         * @return - the i-th value of the event (the values of a list follow the values before it).
+         */
+        public int value(int i) {
+            return values[i];
+        }
+
+        /**
+         * @return - the values of the list of a claim (its slots) or of an end (the winners).
+         */
+        public int[] list() {
+            int fixed = FIELDS[type].length - 1;
+            return Arrays.copyOfRange(values, fixed, values.length);
+        }
+
+        /**
+         * @return - true iff the other event has the same type and values (at any time).
+         */
+        public boolean sameAs(Event other) {
+            return other != null && type == other.type && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(NAMES[type]);
+            String[] fields = FIELDS[type];
+            int fixed = LISTS[type] ? fields.length - 1 : fields.length;
+            for (int i = 0; i < fixed; i++)
+                text.append(' ').append(fields[i]).append('=').append(values[i]);
+            if (LISTS[type])
+                text.append(' ').append(fields[fixed]).append('=').append(Arrays.toString(list()));
+            return text.toString();
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param in         - the records, positioned at the record.
+     * @param lastMillis - the time of the previous record (or the start time of the journal).
+     * @return - the record, or null at the end of the records.
+     */
+    public static Event read(ByteBuffer in, long lastMillis) {
+        if (!in.hasRemaining()) return null;
+        int type = in.get();
+        if (type <= 0 || type >= NAMES.length) return null; // the zeros after the last record, or garbage
+        long millis = lastMillis + getVarint(in);
+        int fixed = LISTS[type] ? FIELDS[type].length - 1 : FIELDS[type].length;
+        int[] values = new int[fixed];
+        for (int i = 0; i < fixed; i++)
+            values[i] = (int) getVarint(in);
+        if (LISTS[type]) {
+            int length = (int) getVarint(in);
+            values = Arrays.copyOf(values, fixed + length);
+            for (int i = fixed; i < values.length; i++)
+                values[i] = (int) getVarint(in);
+        }
+        return new Event(type, millis, values);
+    }
+
+    /**
+     * Reads a journal file.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer in;
+        private final long seed;
+        private final long startMillis;
+        private final Properties config;
+        private long lastMillis;
+
+        public Reader(File file) throws IOException {
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            byte[] magic = new byte[MAGIC.length];
+            if (in.remaining() > MAGIC.length) in.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException(file + " is not a game journal");
+            int version = in.get();
+            if (version != VERSION)
+                throw new IOException(file + ": unsupported journal version " + version);
+            seed = getVarint(in);
+            startMillis = getVarint(in);
+            byte[] properties = new byte[(int) getVarint(in)];
+            in.get(properties);
+            config = new Properties();
+            config.load(new ByteArrayInputStream(properties));
+            lastMillis = startMillis;
+        }
+
+        public long seed() {
+            return seed;
+        }
+
+        /**
+         * @return - the game clock time the journal was opened at.
+         */
+        public long startMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return - the properties of the game's configuration.
+         */
+        public Properties config() {
+            return config;
+        }
+
+        /**
+         * @return - the next record, or null at the end of the journal.
+         */
+        public Event next() {
+            try {
+                Event event = read(in, lastMillis);
+                if (event != null) lastMillis = event.millis;
+                return event;
+            } catch (RuntimeException e) { // a record cut by a crash
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Prints a journal as text: java bguspl.set.GameJournal &lt;journal file&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: GameJournal <journal file>");
+            System.exit(1);
+        }
+        Reader reader = new Reader(new File(args[0]));
+        System.out.println("seed " + reader.seed());
+        reader.config().forEach((key, value) -> System.out.println(key + "=" + value));
+        for (Event event = reader.next(); event != null; event = reader.next())
+            System.out.println(String.format("%9d ", event.millis - reader.startMillis()) + event);
+    }
+}
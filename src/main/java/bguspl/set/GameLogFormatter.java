@@ -0,0 +1,114 @@
+package bguspl.set;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats log records with a java.util.Formatter format of the record time (%1), level (%2) and message (%3).
+ * The format isn't synchronized, so logging threads formatting records don't wait for each other, and the default
+ * format is written without java.util.Formatter (reformatting the time of day once per second only).
+ * Messages with parameters ("placing card {0} in slot {1}") are formatted only here, so a record that isn't written
+ * (or is written by a background thread) costs the logging thread no string building. Parameters are written with
+ * String.valueOf (without the number grouping of java.text.MessageFormat).
+ */
+public class GameLogFormatter extends Formatter {
+
+    /**
+     * The default format: "[HH:mm:ss.SSS] [LEVEL  ] message".
+     */
+    public static final String DEFAULT_FORMAT = "[%1$tT.%1$tL] [%2$-7s] %3$s%n";
+
+    /**
+     * The time of day of a second (immutable, replaced when a record of another second is formatted).
+     */
+    private static final class Second {
+        final long second;
+        final String text;
+
+        Second(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private final String format;
+    private final boolean fast; // true iff the format is the default one
+    private volatile Second second = new Second(Long.MIN_VALUE, "");
+
+    public GameLogFormatter(String format) {
+        this.format = format;
+        this.fast = DEFAULT_FORMAT.equals(format);
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        String message = formatMessage(record);
+        String level = record.getLevel().getLocalizedName();
+        long millis = record.getMillis();
+        StringBuilder text = new StringBuilder(message.length() + 32);
+        if (fast) {
+            text.append('[').append(timeOfDay(millis)).append('.');
+            int milli = (int) Math.floorMod(millis, 1000L);
+            if (milli < 100) text.append('0');
+            if (milli < 10) text.append('0');
+            text.append(milli).append("] [").append(level);
+            for (int i = level.length(); i < 7; i++)
+                text.append(' ');
+            text.append("] ").append(message).append(System.lineSeparator());
+        }
+        else text.append(String.format(format, new Date(millis), level, message));
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(trace));
+            text.append(trace);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return - the "HH:mm:ss" of the given time (in the default time zone).
+     */
+    private String timeOfDay(long millis) {
+        long seconds = Math.floorDiv(millis, 1000L);
+        Second cached = second;
+        if (cached.second != seconds) {
+            LocalTime time = LocalTime.from(Instant.ofEpochSecond(seconds).atZone(ZoneId.systemDefault()));
+            StringBuilder text = new StringBuilder(8);
+            for (int field : new int[]{time.getHour(), time.getMinute(), time.getSecond()}) {
+                if (text.length() > 0) text.append(':');
+                if (field < 10) text.append('0');
+                text.append(field);
+            }
+            cached = new Second(seconds, text.toString());
+            second = cached;
+        }
+        return cached.text;
+    }
+
+    /**
+     * @return - the message of the record with its parameters ({0} to {9}) replaced by their values.
+     */
+    @Override
+    public String formatMessage(LogRecord record) {
+        String message = String.valueOf(record.getMessage());
+        Object[] parameters = record.getParameters();
+        if (parameters == null || parameters.length == 0 || message.indexOf('{') < 0) return message;
+        StringBuilder text = new StringBuilder(message.length() + 16 * parameters.length);
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            int index = i + 2 < message.length() && c == '{' && message.charAt(i + 2) == '}' ? message.charAt(i + 1) - '0' : -1;
+            if (index >= 0 && index <= 9 && index < parameters.length) {
+                text.append(parameters[index]);
+                i += 2;
+            }
+            else text.append(c);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package bguspl.set;
+
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * The random number service of a single game.
+ * Each consumer (the dealer's deck, every AI player) gets its own independent stream split from the game's seed, so
+ * drawing random numbers never contends with other threads, and a game can be reproduced by reusing its seed.
+ * Streams must be split in a fixed order (the dealer first, then the players by id) for the game to be reproducible.
+ */
+public class GameRandom {
+
+    /**
+     * The seed of the game.
+     */
+    private final long seed;
+
+    /**
+     * The generator the streams are split from.
+     */
+    private final SplittableRandom root;
+
+    public GameRandom(Logger logger, Config config) {
+        this(logger, config.randomSeed != 0 ? config.randomSeed : new SplittableRandom().nextLong());
+    }
+
+    public GameRandom(Logger logger, long seed) {
+        this.seed = seed;
+        this.root = new SplittableRandom(seed);
+        logger.info("random seed: " + seed);
+    }
+
+    /**
+     * Creates a new independent random stream. The stream itself is not thread safe, it should be used by one thread.
+     *
+     * @return - a new random stream.
+     */
+    public synchronized SplittableRandom split() {
+        return root.split();
+    }
+
+    /**
+     * @return - the seed of the game.
+     */
+    public long seed() {
+        return seed;
+    }
+}
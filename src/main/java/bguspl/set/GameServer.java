@@ -0,0 +1,306 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent tables (games) in one JVM.
+ * Every table has its own environment, table, dealer and players, so terminating a table affects no other table.
+ * The tables share the logger (unless every game logs to its own file), the configuration, the thread factory, the pool
+ * running the dealers, the pool validating claims (if configured), the set universe and the card images of their windows.
+ */
+public class GameServer {
+
+    /**
+     * Creates the user interface of a table.
+     */
+    public interface UserInterfaceFactory {
+
+        /**
+         * @param table   - the id of the table.
+         * @param players - the players array of the table (filled when a game is created, reused by later games).
+         * @return - the user interface of the table.
+         */
+        UserInterface create(int table, Player[] players);
+    }
+
+    /**
+     * A table hosted by the server, running one game at a time.
+     */
+    private static class HostedTable {
+        final int id;
+        final Player[] players;
+        final UserInterface ui;
+        volatile Game game;
+        volatile Future<?> dealer;
+
+        /**
+         * The number of claims ruled in the previous games of the table.
+         */
+        long pastClaims;
+
+        /**
+         * The number of games started on the table.
+         */
+        int games;
+
+        HostedTable(int id, Player[] players, UserInterface ui) {
+            this.id = id;
+            this.players = players;
+            this.ui = ui;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final GameThreadFactory threads;
+    private final GameRandom seeds;
+
+    /**
+     * Runs the dealers of all the tables (a dealer task runs for the whole game).
+     */
+    private final ExecutorService dealers;
+
+    /**
+     * Validates the claims of all the tables (null if claims are validated by the dealers).
+     */
+    private final ExecutorService claimValidators;
+
+    private final ConcurrentHashMap<Integer, HostedTable> tables;
+
+    /**
+     * The endpoint serving the metrics of all the tables (null if not configured).
+     */
+    private final MetricsServer metricsServer;
+    private final AtomicInteger nextId;
+
+    public GameServer(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        this.util = new UtilImpl(config);
+        this.threads = new GameThreadFactory(logger, config);
+        this.seeds = new GameRandom(logger, config);
+        AtomicInteger dealerCount = new AtomicInteger();
+        this.dealers = Executors.newCachedThreadPool(task -> threads.newThread(task, "dealer-" + dealerCount.getAndIncrement()));
+        AtomicInteger validatorCount = new AtomicInteger();
+        this.claimValidators = config.claimValidationThreads == 0 ? null : Executors.newFixedThreadPool(
+                config.claimValidationThreads, task -> threads.newThread(task, "validator-" + validatorCount.getAndIncrement()));
+        this.tables = new ConcurrentHashMap<>();
+        this.nextId = new AtomicInteger();
+        this.metricsServer = MetricsServer.start(config, logger);
+    }
+
+    /**
+     * Creates a headless table and starts its game.
+     *
+     * @return - the id of the table.
+     */
+    public int createTable() {
+        return createTable((table, players) -> new HeadlessUserInterface());
+    }
+
+    /**
+     * Creates a table and starts its game.
+     *
+     * @param uiFactory - creates the user interface of the table.
+     * @return - the id of the table.
+     */
+    public int createTable(UserInterfaceFactory uiFactory) {
+        int id = nextId.getAndIncrement();
+        Player[] players = new Player[config.players];
+        HostedTable table = new HostedTable(id, players, uiFactory.create(id, players));
+        start(table);
+        tables.put(id, table); // published with its game and dealer
+        logger.info("table " + id + " created.");
+        return id;
+    }
+
+    /**
+     * Starts a new game on a table.
+     */
+    private void start(HostedTable table) {
+        long seed = seeds.split().nextLong();
+        Logger gameLogger = config.logPerGame ? Main.gameLogger(logger, "table-" + table.id + "-" + table.games) : logger;
+        table.games++;
+        Env env = new Env(gameLogger, config, table.ui, util, threads, new GameRandom(gameLogger, seed), claimValidators);
+        Game game = new Game(env, table.players);
+        table.game = game;
+        table.dealer = dealers.submit(() -> {
+            try {
+                game.run();
+            } catch (RuntimeException e) { // a failing game is ended without affecting the other tables
+                logger.log(Level.SEVERE, "table " + table.id + " failed", e);
+                game.terminate();
+            } finally {
+                Main.closeGameLogger(gameLogger, logger);
+            }
+        });
+    }
+
+    /**
+     * Terminates the game of a table and removes the table.
+     *
+     * @param id - the id of the table.
+     * @return - true iff the table existed.
+     */
+    public boolean terminateTable(int id) {
+        HostedTable table = tables.get(id);
+        if (table == null) return false;
+        synchronized (table) { // not interleaved with a restart of the table
+            if (!tables.remove(id, table)) return false; // terminated meanwhile
+            stop(table);
+            table.ui.dispose();
+        }
+        logger.info("table " + id + " terminated.");
+        return true;
+    }
+
+    /**
+     * Reuses a table for a new game, ending its current game if it is still running.
+     *
+     * @param id - the id of the table.
+     * @return - true iff the table exists.
+     */
+    public boolean restartTable(int id) {
+        HostedTable table = tables.get(id);
+        if (table == null) return false;
+        synchronized (table) {
+            if (tables.get(id) != table) return false; // terminated meanwhile
+            stop(table);
+            table.pastClaims += table.game.dealer.getClaims();
+            for (int player = 0; player < table.players.length; player++)
+                table.ui.setScore(player, 0);
+            table.ui.removeTokens();
+            start(table);
+        }
+        logger.info("table " + id + " restarted.");
+        return true;
+    }
+
+    /**
+     * Terminates the game of a table and waits for its dealer to end.
+     */
+    private void stop(HostedTable table) {
+        table.game.terminate();
+        try {
+            table.dealer.get();
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, "table " + table.id + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return - the game currently played on a table, or null if there is no such table.
+     */
+    public Game game(int id) {
+        HostedTable table = tables.get(id);
+        return table == null ? null : table.game;
+    }
+
+    /**
+     * @return - the number of claims ruled at a table in all its games (approximate while a game is running).
+     */
+    public long claims(int id) {
+        HostedTable table = tables.get(id);
+        if (table == null) return 0;
+        synchronized (table) {
+            return table.pastClaims + table.game.dealer.getClaims();
+        }
+    }
+
+    /**
+     * @return - true iff the game of the table is still running.
+     */
+    public boolean isRunning(int id) {
+        HostedTable table = tables.get(id);
+        return table != null && !table.dealer.isDone();
+    }
+
+    /**
+     * @return - the ids of the hosted tables.
+     */
+    public Set<Integer> tables() {
+        return tables.keySet();
+    }
+
+    /**
+     * Terminates all the tables and the shared pools.
+     */
+    public void shutdown() {
+        for (HostedTable table : tables.values()) // ending all the games first, so they wind down concurrently
+            table.game.terminate();
+        for (Integer id : new ArrayList<>(tables.keySet()))
+            terminateTable(id);
+        dealers.shutdown();
+        if (claimValidators != null) claimValidators.shutdown();
+        if (metricsServer != null) metricsServer.stop();
+    }
+
+    /**
+     * Hosts headless tables of computer players for a while and reports the density of the node.
+     *
+     * @param args - the number of tables (default 100), the number of seconds to run them (default 30) and the number of
+     *             computer players at every table (default the configured number, at least 2).
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Main.initLogger("SetServerLogger", "server_");
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        Properties properties = Config.loadProperties("config.properties", logger);
+        int tableCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 30;
+        int players = args.length > 2 ? Integer.parseInt(args[2])
+                : Math.max(2, Integer.parseInt(properties.getProperty("ComputerPlayers", "0")));
+        Tournament.headless(properties, players);
+        Config config = new Config(logger, properties);
+
+        GameServer server = new GameServer(logger, config);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseHeap = runtime.totalMemory() - runtime.freeMemory();
+        int baseThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        List<Integer> ids = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++)
+            ids.add(server.createTable());
+
+        long end = System.currentTimeMillis() + seconds * 1000;
+        int restarts = 0;
+        while (System.currentTimeMillis() < end) { // reusing the tables whose game ended
+            Thread.sleep(100);
+            for (int id : ids)
+                if (!server.isRunning(id) && server.restartTable(id)) restarts++;
+        }
+        System.gc();
+        long heap = runtime.totalMemory() - runtime.freeMemory() - baseHeap;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount() - baseThreads;
+        long claims = 0;
+        for (int id : ids)
+            claims += server.claims(id);
+        server.shutdown();
+
+        String report = String.format("%d tables of %d computer players for %ds (%d games restarted): %d threads"
+                        + " (%.1f per table), %.1fMB heap (%.1fKB per table), %.0f claims/s",
+                tableCount, players, seconds, restarts, threads, (double) threads / tableCount, heap / 1e6,
+                heap / 1e3 / tableCount, (double) claims / seconds);
+        System.out.println(report);
+        logger.severe(report);
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+}
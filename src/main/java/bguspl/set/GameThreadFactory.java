@@ -0,0 +1,68 @@
+package bguspl.set;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Logger;
+
+/**
+ * Creates the game's threads (dealer, players and AI), either as platform threads or as virtual threads.
+ * Virtual threads are created reflectively so the game still builds and runs on Java 8. When running on a JVM
+ * without virtual threads (before Java 21) the factory falls back to platform threads.
+ */
+public class GameThreadFactory {
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable) (null if unsupported)
+     */
+    private static final Method ofVirtual;
+    private static final Method builderName;
+    private static final Method builderUnstarted;
+
+    static {
+        Method of = null, name = null, unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            of = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {} // running on a JVM before Java 21
+        ofVirtual = of;
+        builderName = name;
+        builderUnstarted = unstarted;
+    }
+
+    /**
+     * True iff the threads created by this factory are virtual threads.
+     */
+    private final boolean virtual;
+
+    public GameThreadFactory(Logger logger, Config config) {
+        if (config.virtualThreads && ofVirtual == null)
+            logger.severe("warning: virtual threads are not supported by this JVM, using platform threads.");
+        this.virtual = config.virtualThreads && ofVirtual != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread.
+     *
+     * @param target - the runnable the thread runs.
+     * @param name   - the name of the thread.
+     * @return - an unstarted virtual thread if running in virtual mode, a platform thread otherwise.
+     */
+    public Thread newThread(Runnable target, String name) {
+        if (!virtual) return new Thread(target, name);
+        try {
+            Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+            return (Thread) builderUnstarted.invoke(builder, target);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("cannot create virtual thread " + name, e);
+        }
+    }
+
+    /**
+     * @return - true iff the threads created by this factory are virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
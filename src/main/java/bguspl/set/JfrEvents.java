@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder events of the game. Loaded only through GameEvents, and only if the JVM has Flight Recorder.
+ * The events are committed when the recorded action ends, with its duration as a field (so their own duration is 0).
+ */
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    @Name("bguspl.set.ClaimVerdict")
+    @Label("Claim Verdict")
+    @Category({"Set Game", "Dealer"})
+    @Description("A claim of a set answered by the dealer")
+    @StackTrace(false)
+    static class ClaimVerdict extends Event {
+        @Label("Claim") @Description("The sequence of the claim in the dealer's events ring (0 if answered before it was drained)")
+        long claim;
+        @Label("Player")
+        int player;
+        @Label("Verdict")
+        String verdict;
+        @Label("Validation") @Timespan(Timespan.NANOSECONDS)
+        long validation;
+        @Label("Latency") @Description("From the last token of the claim to the verdict") @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("bguspl.set.TableChange")
+    @Label("Table Change")
+    @Category({"Set Game", "Dealer"})
+    @Description("Cards dealt to the table or returned from it to the deck")
+    @StackTrace(false)
+    static class TableChange extends Event {
+        @Label("Action")
+        String action;
+        @Label("Cards")
+        int cards;
+        @Label("Delay") @Description("The time spent, including the table delays") @Timespan(Timespan.NANOSECONDS)
+        long delay;
+    }
+
+    @Name("bguspl.set.Freeze")
+    @Label("Player Freeze")
+    @Category({"Set Game", "Player"})
+    @StackTrace(false)
+    static class Freeze extends Event {
+        @Label("Player")
+        int player;
+        @Label("Verdict")
+        String verdict;
+        @Label("Requested") @Timespan(Timespan.MILLISECONDS)
+        long requested;
+        @Label("Frozen") @Description("On the game clock") @Timespan(Timespan.MILLISECONDS)
+        long frozen;
+    }
+
+    @Name("bguspl.set.FindSets")
+    @Label("Find Sets")
+    @Category({"Set Game", "Util"})
+    @StackTrace(false)
+    static class FindSets extends Event {
+        @Label("Cards")
+        int cards;
+        @Label("Requested") @Description("The number of sets searched for")
+        int requested;
+        @Label("Found")
+        int found;
+        @Label("Elapsed") @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    static void claimVerdict(long claim, int player, String verdict, long validationNanos, long latencyNanos) {
+        ClaimVerdict event = new ClaimVerdict();
+        if (!event.isEnabled()) return;
+        event.claim = claim;
+        event.player = player;
+        event.verdict = verdict;
+        event.validation = validationNanos;
+        event.latency = latencyNanos;
+        event.commit();
+    }
+
+    static void tableChange(String action, int cards, long delayNanos) {
+        TableChange event = new TableChange();
+        if (!event.isEnabled()) return;
+        event.action = action;
+        event.cards = cards;
+        event.delay = delayNanos;
+        event.commit();
+    }
+
+    static void freeze(int player, String verdict, long requestedMillis, long frozenMillis) {
+        Freeze event = new Freeze();
+        if (!event.isEnabled()) return;
+        event.player = player;
+        event.verdict = verdict;
+        event.requested = requestedMillis;
+        event.frozen = frozenMillis;
+        event.commit();
+    }
+
+    static void findSets(int cards, int requested, int found, long elapsedNanos) {
+        FindSets event = new FindSets();
+        if (!event.isEnabled()) return;
+        event.cards = cards;
+        event.requested = requested;
+        event.found = found;
+        event.elapsed = elapsedNanos;
+        event.commit();
+    }
+}
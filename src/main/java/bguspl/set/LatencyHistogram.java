@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations (or any non negative values), recorded without allocating.
+ * Values are counted in log-linear buckets: every power of 2 is split into SUB_BUCKETS buckets, so a percentile is
+ * reported with a relative error of at most 1 / SUB_BUCKETS (12.5%), over the whole range of long values, in a fixed
+ * amount of memory. Recording is a single atomic increment (and a compare-and-set for a new maximum), so any number of
+ * threads may record concurrently while others read; a reading racing with recordings may miss the latest values.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Values below SUB_BUCKETS have a bucket each, then every power of 2 up to 2^62 has SUB_BUCKETS buckets.
+     */
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value (negative values are recorded as 0).
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value); // at least SUB_BITS
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return - the largest value counted in the bucket.
+     */
+    private static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * @return - the number of values recorded.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @return - the sum of the values recorded.
+     */
+    public long sum() {
+        return sum.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param fraction - between 0 and 1.
+     * @return - an upper bound of the value at the given fraction of the recorded values (0 if there are none).
+     */
+    public long percentile(double fraction) {
+        long count = count();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            if ((seen += counts.get(i)) >= rank) return Math.min(highest(i), max.get());
+        return max.get();
+    }
+}
@@ -1,15 +1,14 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.*;
 
 /**
@@ -17,18 +16,17 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
-    private static Thread mainThread;
-
-    private static boolean xButtonPressed = false;
-    private static Logger logger;
+    /**
+     * The directory of the log files (and of the other diagnostic files of the games).
+     */
+    public static final String LOGS_DIRECTORY = "./logs/";
 
-    public static void xButtonPressed() throws InterruptedException {
-        if (logger != null) logger.severe("exit button pressed");
-        xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
-        mainThread.join();
-    }
+    /**
+     * The number of log records waiting to be written before the overflow policy applies (of the main log and of the
+     * log of a game).
+     */
+    private static final int LOG_RING_CAPACITY = 1 << 14;
+    private static final int GAME_LOG_RING_CAPACITY = 1 << 12;
 
     /**
      * The game's main function. Creates all data structures and initializes the threads.
@@ -37,18 +35,31 @@ public class Main {
      */
     public static void main(String[] args) {
 
-        mainThread = Thread.currentThread();
+        Thread mainThread = Thread.currentThread();
 
         // create the game environment objects
-        logger = initLogger();
+        Logger logger = initLogger("SetGameLogger", "");
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
         Util util = new UtilImpl(config);
 
+        // the game and whether it was ended with the X button, accessed by the window's event thread
+        AtomicReference<Game> game = new AtomicReference<>();
+        AtomicBoolean xButtonPressed = new AtomicBoolean();
+        Runnable onClose = () -> {
+            logger.severe("exit button pressed");
+            xButtonPressed.set(true);
+            Game current = game.get();
+            if (current != null) current.terminate();
+            try {
+                mainThread.join();
+            } catch (InterruptedException ignored) {}
+        };
+
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, players, onClose, true);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
@@ -58,63 +69,115 @@ public class Main {
         ui = new UserInterfaceDecorator(logger, util, ui);
 
         Env env = new Env(logger, config, ui, util);
+        MetricsServer metricsServer = MetricsServer.start(config, logger); // null unless a metrics port is configured
 
-        // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
-
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        // create the game entities and start the dealer thread
+        game.set(new Game(env, players));
+        game.get().start();
 
         try {
             // shutdown stuff
-            dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            game.get().join();
+            if (!xButtonPressed.get() && config.endGamePauseMillies > 0) env.clock.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
-            if (!xButtonPressed) env.ui.dispose();
+            if (!xButtonPressed.get()) env.ui.dispose();
+            if (metricsServer != null) metricsServer.stop();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
-    private static Logger initLogger() {
+    /**
+     * Creates a logger writing to a new rotated file in the logs directory, on a background thread (the records still
+     * waiting are written when the JVM exits).
+     *
+     * @param name   - the name of the logger.
+     * @param prefix - the prefix of the log file name (followed by the date and time).
+     */
+    static Logger initLogger(String name, String prefix) {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        AsyncHandler handler;
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncHandler(new RotatingLogStream(new File(LOGS_DIRECTORY),
+                    prefix + format.format(Calendar.getInstance().getTime())), LOG_RING_CAPACITY);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
-        java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger(name);
         logger.setUseParentHandlers(false);
         logger.addHandler(handler);
-        setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
+        setLoggerLevelAndFormat(logger, Level.ALL, GameLogFormatter.DEFAULT_FORMAT, AsyncHandler.Overflow.BLOCK);
 
         return logger;
     }
 
-    public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
+    /**
+     * Sets the level of the logger, and the format and the overflow policy of its handlers.
+     */
+    public static void setLoggerLevelAndFormat(Logger logger, Level level, String format, AsyncHandler.Overflow overflow) {
         Handler[] handlers = logger.getHandlers();
-        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
-            // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
-            @Override
-            public synchronized String format(LogRecord lr) {
-                return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
-                );
-            }
-        }));
+        if (handlers != null) Arrays.stream(handlers).forEach(h -> {
+            h.setFormatter(new GameLogFormatter(format));
+            if (h instanceof AsyncHandler) ((AsyncHandler) h).setOverflow(overflow);
+        });
         logger.setLevel(level);
     }
+
+    /**
+     * Sets the rotation of the log files of the logger (see RotatingLogStream).
+     */
+    public static void setLoggerRotation(Logger logger, long maxBytes, long maxMillis, int retention, boolean compress) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) for (Handler h : handlers)
+            if (h instanceof AsyncHandler && ((AsyncHandler) h).output() instanceof RotatingLogStream)
+                ((RotatingLogStream) ((AsyncHandler) h).output()).setRotation(maxBytes, maxMillis, retention, compress);
+    }
+
+    /**
+     * Creates the logger of a game, writing to its own file next to the log file of the given logger
+     * (&lt;log file name&gt;.&lt;game&gt;.log), with the same level, format, overflow policy and rotation.
+     * The logger should be closed with closeGameLogger when the game ends.
+     *
+     * @param game - the name of the game (unique in the JVM).
+     * @return - the logger of the game, or the given logger if it doesn't write to a rotated file.
+     */
+    public static Logger gameLogger(Logger logger, String game) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) for (Handler h : handlers) {
+            if (!(h instanceof AsyncHandler) || !(((AsyncHandler) h).output() instanceof RotatingLogStream)) continue;
+            AsyncHandler handler;
+            try {
+                handler = new AsyncHandler(((RotatingLogStream) ((AsyncHandler) h).output()).sibling(game),
+                        GAME_LOG_RING_CAPACITY);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "cannot create the log file of " + game, e);
+                return logger;
+            }
+            handler.setFormatter(h.getFormatter());
+            handler.setOverflow(((AsyncHandler) h).getOverflow());
+            Logger gameLogger = Logger.getLogger(logger.getName() + "." + game);
+            gameLogger.setUseParentHandlers(false);
+            gameLogger.addHandler(handler);
+            gameLogger.setLevel(logger.getLevel());
+            return gameLogger;
+        }
+        return logger;
+    }
+
+    /**
+     * Writes the waiting records of the logger of a game and closes its file (does nothing for other loggers).
+     */
+    public static void closeGameLogger(Logger gameLogger, Logger logger) {
+        if (gameLogger == logger) return;
+        for (Handler h : gameLogger.getHandlers()) {
+            gameLogger.removeHandler(h);
+            h.close();
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of one game: counters, gauges and latency histograms, in groups (the dealer, the table, every player).
+ * Metrics are created once, when the game entities are created, and then recorded without locking or allocating, so
+ * they are always on. While the game runs, every group is exposed as a JMX MBean named
+ * "bguspl.set:game=&lt;game&gt;,&lt;group&gt;" (e.g. "bguspl.set:game=game-0,type=Player,id=1").
+ */
+public class Metrics {
+
+    /**
+     * Groups of the game entities (the key properties of their MBean names).
+     */
+    public static final String DEALER = "type=Dealer";
+    public static final String TABLE = "type=Table";
+
+    public static String player(int id) {
+        return "type=Player,id=" + id;
+    }
+
+    /**
+     * A count of events.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A value sampled when read.
+     */
+    public static class Gauge {
+        private final LongSupplier value;
+
+        Gauge(LongSupplier value) {
+            this.value = value;
+        }
+
+        public long get() {
+            return value.getAsLong();
+        }
+    }
+
+    /**
+     * The metrics of all the games of the JVM, including the games that ended (not registered as MBeans).
+     */
+    public static final Metrics JVM = new Metrics("jvm");
+
+    /**
+     * Numbers the games of the JVM.
+     */
+    private static final AtomicInteger games = new AtomicInteger();
+
+    /**
+     * The metrics of the running games (registered and not yet unregistered), for the exporters covering the JVM.
+     */
+    private static final Set<Metrics> live = ConcurrentHashMap.newKeySet();
+
+    private final String game;
+
+    /**
+     * The metrics (Counter, Gauge or LatencyHistogram) of every group by name, sorted for a stable output.
+     */
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Object>> groups = new ConcurrentSkipListMap<>();
+
+    /**
+     * The names of the registered MBeans.
+     */
+    private final Map<String, ObjectName> registered = new ConcurrentHashMap<>();
+
+    public Metrics() {
+        this("game-" + games.getAndIncrement());
+    }
+
+    public Metrics(String game) {
+        this.game = game;
+    }
+
+    /**
+     * @return - the metrics of the games currently running in the JVM.
+     */
+    public static Collection<Metrics> live() {
+        return Collections.unmodifiableSet(live);
+    }
+
+    /**
+     * @return - the name of the game.
+     */
+    public String game() {
+        return game;
+    }
+
+    private <T> T metric(String group, String name, Class<T> type, Object created) {
+        Object metric = groups.computeIfAbsent(group, g -> new ConcurrentSkipListMap<>()).putIfAbsent(name, created);
+        if (metric == null) return type.cast(created);
+        if (!type.isInstance(metric))
+            throw new IllegalArgumentException("metric " + group + " " + name + " is not a " + type.getSimpleName());
+        return type.cast(metric);
+    }
+
+    /**
+     * @return - the counter of the given name in the group (created on the first call).
+     */
+    public Counter counter(String group, String name) {
+        return metric(group, name, Counter.class, new Counter());
+    }
+
+    /**
+     * @return - the histogram of the given name in the group (created on the first call).
+     */
+    public LatencyHistogram histogram(String group, String name) {
+        return metric(group, name, LatencyHistogram.class, new LatencyHistogram());
+    }
+
+    /**
+     * Adds a gauge to the group, replacing a gauge of the same name.
+     *
+     * @param value - samples the value (called by the readers of the metrics, from any thread).
+     */
+    public void gauge(String group, String name, LongSupplier value) {
+        groups.computeIfAbsent(group, g -> new ConcurrentSkipListMap<>()).put(name, new Gauge(value));
+    }
+
+    /**
+     * @return - the metrics of every group by name (a live read-only view).
+     */
+    public Map<String, Map<String, Object>> groups() {
+        return Collections.unmodifiableMap(groups);
+    }
+
+    /**
+     * Marks the game as running and registers the MBeans of all the groups in the platform MBean server (failures are
+     * logged and ignored).
+     */
+    public void register(Logger logger) {
+        live.add(this);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (String group : groups.keySet()) {
+                ObjectName name = new ObjectName("bguspl.set:game=" + game + "," + group);
+                server.registerMBean(new MetricsMBean(groups.get(group)), name);
+                registered.put(group, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            logger.log(Level.WARNING, "cannot register the metrics of " + game, e);
+        }
+    }
+
+    /**
+     * Marks the game as ended and unregisters the MBeans registered by register.
+     */
+    public void unregister() {
+        live.remove(this);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered.values()) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+            }
+        }
+        registered.clear();
+    }
+}
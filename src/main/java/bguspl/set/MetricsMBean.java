@@ -0,0 +1,96 @@
+package bguspl.set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Exposes a group of metrics as read-only JMX attributes.
+ * A counter or a gauge is an attribute of its name, a histogram is the attributes of its name suffixed with Count,
+ * Mean, P50, P99, P999 and Max. The attributes are listed again on every request for the MBean info, so metrics
+ * added to the group later are exposed too.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private final Map<String, Object> metrics;
+
+    MetricsMBean(Map<String, Object> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return - the readers of the attributes by name.
+     */
+    private Map<String, Supplier<Object>> attributes() {
+        Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+        metrics.forEach((name, metric) -> {
+            if (metric instanceof Metrics.Counter)
+                attributes.put(name, ((Metrics.Counter) metric)::get);
+            else if (metric instanceof Metrics.Gauge)
+                attributes.put(name, ((Metrics.Gauge) metric)::get);
+            else if (metric instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                attributes.put(name + "Count", histogram::count);
+                attributes.put(name + "Mean", histogram::mean);
+                attributes.put(name + "P50", () -> histogram.percentile(0.5));
+                attributes.put(name + "P99", () -> histogram.percentile(0.99));
+                attributes.put(name + "P999", () -> histogram.percentile(0.999));
+                attributes.put(name + "Max", histogram::max);
+            }
+        });
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> reader = attributes().get(attribute);
+        if (reader == null) throw new AttributeNotFoundException(attribute);
+        return reader.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Supplier<Object>> attributes = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> reader = attributes.get(name);
+            if (reader != null) list.add(new Attribute(name, reader.get()));
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("read-only attribute " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(action);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        attributes().forEach((name, reader) -> {
+            String type = reader.get() instanceof Double ? "double" : "long";
+            infos.add(new MBeanAttributeInfo(name, type, name, true, false, false));
+        });
+        return new MBeanInfo(getClass().getName(), "game metrics", infos.toArray(new MBeanAttributeInfo[0]),
+                null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,239 @@
+package bguspl.set;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An HTTP endpoint on localhost serving the metrics of all the games running in the JVM, for monitoring by scraping.
+ * GET /metrics returns the metrics in the Prometheus text format: the number of running games and players, the claims
+ * of all the games by verdict (with the claims per second since the previous scrape and the verdict ratios), the
+ * threads of the JVM, and every metric of every running game, labeled by game (and player). GET /health returns 200
+ * while every dealer shows signs of life, and 503 listing the stalled dealers otherwise.
+ * The endpoint exists only if a MetricsPort is configured; the games record their metrics the same either way.
+ */
+public class MetricsServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long stallNanos;
+
+    /**
+     * The claims of all the games and the System.nanoTime() at the previous scrape, for the claims per second.
+     */
+    private long lastClaims;
+    private long lastScrapeNanos;
+
+    private MetricsServer(int port, long stallMillis) throws IOException {
+        this.stallNanos = stallMillis * 1_000_000;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/metrics", exchange -> respond(exchange, 200, scrape()));
+        server.createContext("/health", exchange -> {
+            List<String> stalled = stalledDealers();
+            respond(exchange, stalled.isEmpty() ? 200 : 503, stalled.isEmpty()
+                    ? "OK " + Metrics.live().size() + " games\n" : "STALLED " + String.join(" ", stalled) + "\n");
+        });
+        server.setExecutor(executor);
+        this.lastScrapeNanos = System.nanoTime();
+        this.lastClaims = claims();
+    }
+
+    /**
+     * Starts the endpoint on the configured port.
+     *
+     * @return - the endpoint, or null if no port is configured or the endpoint could not be started.
+     */
+    public static MetricsServer start(Config config, Logger logger) {
+        if (config.metricsPort <= 0) return null;
+        try {
+            MetricsServer metricsServer = new MetricsServer(config.metricsPort, config.dealerStallMillis);
+            metricsServer.server.start();
+            logger.info("serving metrics on http://localhost:" + config.metricsPort + "/metrics");
+            return metricsServer;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot serve metrics on port " + config.metricsPort, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the endpoint.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return - the names of the games whose dealer showed no sign of life for longer than the stall threshold.
+     */
+    private List<String> stalledDealers() {
+        List<String> stalled = new ArrayList<>();
+        for (Metrics metrics : Metrics.live()) {
+            Map<String, Object> dealer = metrics.groups().get(Metrics.DEALER);
+            Object heartbeat = dealer == null ? null : dealer.get("heartbeatAgeNanos");
+            if (stallNanos > 0 && heartbeat instanceof Metrics.Gauge && ((Metrics.Gauge) heartbeat).get() > stallNanos)
+                stalled.add(String.format("%s (%.1fs)", metrics.game(), ((Metrics.Gauge) heartbeat).get() / 1e9));
+        }
+        return stalled;
+    }
+
+    /**
+     * @return - the number of claims answered in all the games of the JVM.
+     */
+    private static long claims() {
+        long claims = 0;
+        Map<String, Object> dealer = Metrics.JVM.groups().get(Metrics.DEALER);
+        if (dealer != null)
+            for (Object metric : dealer.values())
+                if (metric instanceof Metrics.Counter) claims += ((Metrics.Counter) metric).get();
+        return claims;
+    }
+
+    /**
+     * The samples of a metric family, written under a single HELP and TYPE header.
+     */
+    private static class Family {
+        final String type;
+        final String help;
+        final List<String> samples = new ArrayList<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private synchronized String scrape() {
+        TreeMap<String, Family> families = new TreeMap<>();
+        int players = 0;
+        for (Metrics metrics : Metrics.live())
+            for (Map.Entry<String, Map<String, Object>> group : metrics.groups().entrySet()) {
+                if (group.getKey().startsWith("type=Player")) players++;
+                export(families, metrics.game(), group.getKey(), group.getValue());
+            }
+
+        sample(families, "set_games_active", "gauge", "the number of running games", "", Metrics.live().size());
+        sample(families, "set_players", "gauge", "the number of players in the running games", "", players);
+        long claims = claims();
+        long now = System.nanoTime();
+        double perSecond = now == lastScrapeNanos ? 0 : (claims - lastClaims) * 1e9 / (now - lastScrapeNanos);
+        lastClaims = claims;
+        lastScrapeNanos = now;
+        sample(families, "set_claims_per_second", "gauge", "the claims answered per second since the previous scrape", "", perSecond);
+        Map<String, Object> dealer = Metrics.JVM.groups().get(Metrics.DEALER);
+        if (dealer != null)
+            for (Map.Entry<String, Object> verdict : dealer.entrySet()) {
+                String label = "{verdict=\"" + snake(verdict.getKey().substring("claims".length())) + "\"}";
+                long count = ((Metrics.Counter) verdict.getValue()).get();
+                sample(families, "set_claims_total", "counter", "the claims answered in all the games by verdict", label, count);
+                sample(families, "set_claims_ratio", "gauge", "the share of the claims answered with each verdict", label,
+                        claims == 0 ? 0 : (double) count / claims);
+            }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sample(families, "set_jvm_threads", "gauge", "the threads of the JVM", "{state=\"live\"}", threads.getThreadCount());
+        sample(families, "set_jvm_threads", "gauge", "the threads of the JVM", "{state=\"daemon\"}", threads.getDaemonThreadCount());
+        sample(families, "set_jvm_threads", "gauge", "the threads of the JVM", "{state=\"peak\"}", threads.getPeakThreadCount());
+
+        StringBuilder out = new StringBuilder();
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (String sample : family.samples) out.append(sample).append('\n');
+        });
+        return out.toString();
+    }
+
+    /**
+     * Adds the metrics of a group of a game: a group "type=Player,id=1" of game g exports a metric fooNanos as
+     * set_player_foo_seconds{game="g",id="1"}.
+     */
+    private static void export(TreeMap<String, Family> families, String game, String group, Map<String, Object> metrics) {
+        StringBuilder labels = new StringBuilder("{game=\"").append(game).append('"');
+        String prefix = "set";
+        String type = group;
+        for (String property : group.split(",")) {
+            String[] keyValue = property.split("=", 2);
+            if (keyValue[0].equals("type")) {
+                prefix += "_" + snake(keyValue[1]);
+                type = keyValue[1];
+            }
+            else labels.append(',').append(keyValue[0]).append("=\"").append(keyValue[1]).append('"');
+        }
+        labels.append('}');
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            boolean nanos = name.endsWith("Nanos");
+            String metricName = prefix + "_" + snake(nanos ? name.substring(0, name.length() - 5) : name) + (nanos ? "_seconds" : "");
+            double scale = nanos ? 1e-9 : 1;
+            Object metric = entry.getValue();
+            String help = type + " " + name;
+            if (metric instanceof Metrics.Counter)
+                sample(families, metricName + "_total", "counter", help, labels.toString(), ((Metrics.Counter) metric).get());
+            else if (metric instanceof Metrics.Gauge)
+                sample(families, metricName, "gauge", help, labels.toString(), ((Metrics.Gauge) metric).get() * scale);
+            else if (metric instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                String quantile = labels.substring(0, labels.length() - 1) + ",quantile=\"";
+                for (double q : new double[]{0.5, 0.99, 0.999})
+                    sample(families, metricName, "summary", help, quantile + q + "\"}", histogram.percentile(q) * scale);
+                families.get(metricName).samples.add(metricName + "_sum" + labels + " " + format(histogram.sum() * scale));
+                families.get(metricName).samples.add(metricName + "_count" + labels + " " + histogram.count());
+                sample(families, metricName + "_max", "gauge", help + " maximum", labels.toString(), histogram.max() * scale);
+            }
+        }
+    }
+
+    private static void sample(TreeMap<String, Family> families, String name, String type, String help, String labels, double value) {
+        families.computeIfAbsent(name, n -> new Family(type, help)).samples.add(name + labels + " " + format(value));
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    /**
+     * @return - the snake case of a camel case name (e.g. "claimsPoint" is "claims_point").
+     */
+    private static String snake(String name) {
+        StringBuilder snake = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) snake.append('_');
+            snake.append(Character.toLowerCase(c));
+        }
+        return snake.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A game clock following the system clock.
+ */
+public class RealTimeClock implements GameClock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    @Override
+    public void park(Object blocker, long millis) {
+        if (millis > 0) LockSupport.parkNanos(blocker, millis * 1_000_000L);
+    }
+}
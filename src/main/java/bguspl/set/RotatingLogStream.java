@@ -0,0 +1,200 @@
+package bguspl.set;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file that is rotated when it grows too large or too old, so a long-running server doesn't fill the disk.
+ * The records are written to &lt;base&gt;.log. On rotation the file is renamed to &lt;base&gt;.&lt;n&gt;.log (n counting
+ * the rotations) and a new &lt;base&gt;.log is started; the rotated segment is then compressed to
+ * &lt;base&gt;.&lt;n&gt;.log.gz and the oldest segments beyond the retention are deleted, on a background thread.
+ * The file is rotated only when it is flushed (written by AsyncHandler once per batch of records, so a record is never
+ * split between segments); a segment may exceed its size limit by one batch. Not thread safe, meant to be written by
+ * a single thread (the writer of an AsyncHandler), so the game threads never wait for the rotation or the compression.
+ */
+public class RotatingLogStream extends OutputStream {
+
+    /**
+     * The thread compressing the rotated segments and deleting the old ones, for all the log files.
+     */
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "log-compressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final File directory;
+    private final String base;
+
+    /**
+     * The rotated segments of this log file (&lt;base&gt;.&lt;n&gt;.log or &lt;base&gt;.&lt;n&gt;.log.gz).
+     */
+    private final Pattern segments;
+
+    /**
+     * The limits of a segment: its size in bytes and its age in milliseconds (0 for no limit).
+     */
+    private volatile long maxBytes;
+    private volatile long maxMillis;
+
+    /**
+     * The number of rotated segments kept (0 to keep all).
+     */
+    private volatile int retention;
+    private volatile boolean compress = true;
+
+    private OutputStream out;
+    private long bytes;
+    private long startMillis;
+    private int rotations;
+
+    /**
+     * @param directory - the directory of the log file (created if missing).
+     * @param base      - the name of the log file, without the ".log" extension.
+     */
+    public RotatingLogStream(File directory, String base) throws IOException {
+        this.directory = directory;
+        this.base = base;
+        this.segments = Pattern.compile(Pattern.quote(base) + "\\.(\\d+)\\.log(\\.gz)?");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        open();
+    }
+
+    /**
+     * Sets the limits of the segments and the retention.
+     *
+     * @param maxBytes  - the size after which the file is rotated (0 for no limit).
+     * @param maxMillis - the age after which the file is rotated (0 for no limit).
+     * @param retention - the number of rotated segments kept (0 to keep all).
+     * @param compress  - true iff the rotated segments are compressed.
+     */
+    public void setRotation(long maxBytes, long maxMillis, int retention, boolean compress) {
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+        this.retention = retention;
+        this.compress = compress;
+    }
+
+    /**
+     * @return - a new log file in the same directory, named &lt;base&gt;.&lt;name&gt;.log, rotated like this one.
+     */
+    public RotatingLogStream sibling(String name) throws IOException {
+        RotatingLogStream sibling = new RotatingLogStream(directory, base + "." + name);
+        sibling.setRotation(maxBytes, maxMillis, retention, compress);
+        return sibling;
+    }
+
+    /**
+     * @return - the current segment.
+     */
+    public File file() {
+        return new File(directory, base + ".log");
+    }
+
+    private void open() throws IOException {
+        out = new FileOutputStream(file());
+        bytes = 0;
+        startMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    /**
+     * Flushes the segment, and rotates it if it reached a limit.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+        long size = maxBytes, age = maxMillis;
+        if (bytes > 0 && (size > 0 && bytes >= size || age > 0 && System.currentTimeMillis() - startMillis >= age))
+            rotate();
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        File segment = new File(directory, base + "." + ++rotations + ".log");
+        try {
+            Files.move(file().toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) { // writing on to the same file, for another segment length
+            out = new FileOutputStream(file(), true);
+            startMillis = System.currentTimeMillis();
+            bytes = 0;
+            throw e;
+        }
+        open();
+        boolean compressed = compress;
+        int kept = retention;
+        compressor.execute(() -> {
+            if (compressed) gzip(segment);
+            retain(kept);
+        });
+    }
+
+    /**
+     * Compresses a rotated segment, replacing it (called by the compressor thread).
+     */
+    private static void gzip(File segment) {
+        File gz = new File(segment.getPath() + ".gz");
+        try (InputStream in = Files.newInputStream(segment.toPath());
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gz), 1 << 16)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                out.write(buffer, 0, read);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            gz.delete(); // keeping the uncompressed segment
+            return;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        segment.delete();
+    }
+
+    /**
+     * Deletes the oldest rotated segments beyond the retention (called by the compressor thread).
+     */
+    private void retain(int kept) {
+        if (kept <= 0) return;
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        TreeMap<Integer, List<File>> rotated = new TreeMap<>(); // the files of every segment (compressed or not)
+        for (File file : files) {
+            Matcher matcher = segments.matcher(file.getName());
+            if (matcher.matches())
+                rotated.computeIfAbsent(Integer.parseInt(matcher.group(1)), n -> new ArrayList<>()).add(file);
+        }
+        while (rotated.size() > kept)
+            for (File file : rotated.pollFirstEntry().getValue())
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,128 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally counts the sets among a changing collection of distinct cards.
+ * Adding or removing a card only counts the sets containing that card: for a feature size of 3 this takes time linear
+ * in the number of cards, instead of enumerating all the triples of the collection again. Not thread safe, and does
+ * not allocate after construction.
+ */
+public class SetCounter {
+
+    private final SetUniverse universe;
+
+    /**
+     * The cards in the collection (in their first size entries).
+     */
+    private final int[] cards;
+
+    /**
+     * The position of each card in cards (-1 if the card is not in the collection).
+     */
+    private final int[] position;
+
+    /**
+     * Scratch combination of cards completed to a set.
+     */
+    private final int[] combination;
+    private final int[] combinationCards;
+
+    private int size;
+    private int sets;
+
+    public SetCounter(SetUniverse universe) {
+        this.universe = universe;
+        this.cards = new int[universe.deckSize()];
+        this.position = new int[universe.deckSize()];
+        Arrays.fill(position, -1);
+        this.combination = new int[universe.featureSize()];
+        this.combinationCards = new int[universe.featureSize()];
+    }
+
+    /**
+     * Adds a card which is not in the collection.
+     */
+    public void add(int card) {
+        sets += setsWith(card);
+        position[card] = size;
+        cards[size++] = card;
+    }
+
+    /**
+     * Removes a card which is in the collection.
+     */
+    public void remove(int card) {
+        int at = position[card];
+        int last = cards[--size];
+        cards[at] = last;
+        position[last] = at;
+        position[card] = -1;
+        sets -= setsWith(card);
+    }
+
+    /**
+     * Removes all the cards.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            position[cards[i]] = -1;
+        size = 0;
+        sets = 0;
+    }
+
+    /**
+     * @return - true iff the card is in the collection.
+     */
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * @return - the number of cards in the collection.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - the number of sets among the cards in the collection.
+     */
+    public int sets() {
+        return sets;
+    }
+
+    /**
+     * Counts the sets made of the given card (which is not in the collection) and cards of the collection.
+     */
+    private int setsWith(int card) {
+        int r = universe.featureSize() - 2; // the number of other cards chosen, the last one is the completion
+        if (size < r + 1) return 0;
+        if (r == 0) return size; // feature size 2: any two cards are a set
+        if (r == 1) { // feature size 3: the completion of every pair with a card of the collection
+            int count = 0;
+            for (int i = 0; i < size; ++i) // adding 1 iff the completion comes after cards[i], without a branch
+                count += (i - position[universe.complete(card, cards[i])]) >>> 31;
+            return count;
+        }
+        combinationCards[0] = card;
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        int count = 0;
+        while (true) {
+            for (int i = 0; i < r; ++i)
+                combinationCards[i + 1] = cards[combination[i]];
+            int completion = universe.complete(combinationCards, r + 1);
+            // counting every set once, from the combination of its first other cards
+            if (completion >= 0 && position[completion] > combination[r - 1])
+                count++;
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t >= 0 && combination[t] == size - r + t) --t;
+            if (t < 0) return count;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package bguspl.set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable set arithmetic for a deck configuration (feature size and count), shared between games.
+ * The rules are the same as in UtilImpl.testSet: a set is featureSize cards where every feature is either the same
+ * on all cards or different on all cards. Given featureSize - 1 cards there is at most one card completing them to
+ * a set, which lets sets be found and counted without testing every combination of featureSize cards.
+ */
+public class SetUniverse {
+
+    /**
+     * Universes by configuration, created once and shared by all the games using the same deck.
+     */
+    private static final ConcurrentHashMap<Long, SetUniverse> universes = new ConcurrentHashMap<>();
+
+    private final int featureSize;
+    private final int featureCount;
+    private final int deckSize;
+
+    /**
+     * The features of all cards: features[card * featureCount + i] is feature i of the card (as in cardToFeatures).
+     */
+    private final byte[] features;
+
+    /**
+     * The weight of each feature in a card id (featureSize ^ (featureCount - 1 - i)).
+     */
+    private final int[] weights;
+
+    /**
+     * The card completing every pair of cards to a set: pairs[a * deckSize + b] (feature size 3 and decks of up to
+     * PAIRS_DECK_SIZE cards only, null otherwise).
+     */
+    private final short[] pairs;
+
+    /**
+     * The largest deck whose pair completions are precomputed (3^6 cards, a table of 1MB).
+     */
+    private static final int PAIRS_DECK_SIZE = 729;
+
+    private SetUniverse(int featureSize, int featureCount) {
+        if (featureSize < 2 || featureSize > 31)
+            throw new IllegalArgumentException("unsupported feature size " + featureSize);
+        this.featureSize = featureSize;
+        this.featureCount = featureCount;
+        this.deckSize = (int) Math.pow(featureSize, featureCount);
+        this.features = new byte[deckSize * featureCount];
+        this.weights = new int[featureCount];
+        for (int i = featureCount - 1, weight = 1; i >= 0; --i, weight *= featureSize)
+            weights[i] = weight;
+        for (int card = 0; card < deckSize; ++card)
+            for (int i = featureCount - 1, c = card; i >= 0; --i, c /= featureSize)
+                features[card * featureCount + i] = (byte) (c % featureSize);
+        if (featureSize == 3 && deckSize <= PAIRS_DECK_SIZE) {
+            pairs = new short[deckSize * deckSize];
+            for (int a = 0; a < deckSize; ++a)
+                for (int b = 0; b < deckSize; ++b)
+                    pairs[a * deckSize + b] = (short) completePair(a, b);
+        } else pairs = null;
+    }
+
+    /**
+     * @return - the shared universe of the given deck configuration.
+     */
+    public static SetUniverse of(int featureSize, int featureCount) {
+        return universes.computeIfAbsent(((long) featureSize << 32) | featureCount,
+                key -> new SetUniverse(featureSize, featureCount));
+    }
+
+    /**
+     * @return - the shared universe of the configuration's deck.
+     */
+    public static SetUniverse of(Config config) {
+        return of(config.featureSize, config.featureCount);
+    }
+
+    public int featureSize() {
+        return featureSize;
+    }
+
+    public int featureCount() {
+        return featureCount;
+    }
+
+    public int deckSize() {
+        return deckSize;
+    }
+
+    /**
+     * @return - feature i of the card.
+     */
+    public int feature(int card, int i) {
+        return features[card * featureCount + i];
+    }
+
+    /**
+     * Finds the card completing featureSize - 1 distinct cards to a set.
+     *
+     * @param cards  - an array holding the cards in its first length entries.
+     * @param length - the number of cards (featureSize - 1).
+     * @return - the completing card, or -1 if there is none.
+     */
+    public int complete(int[] cards, int length) {
+        if (featureSize == 3 && length == 2) return complete(cards[0], cards[1]);
+        int card = 0;
+        int all = (1 << featureSize) - 1;
+        for (int i = 0; i < featureCount; ++i) {
+            int first = features[cards[0] * featureCount + i];
+            int seen = 0;
+            boolean same = true;
+            for (int j = 0; j < length; ++j) {
+                int value = features[cards[j] * featureCount + i];
+                same &= value == first;
+                seen |= 1 << value;
+            }
+            int value;
+            if (same) value = first;
+            else if (Integer.bitCount(seen) == length) value = Integer.numberOfTrailingZeros(all & ~seen);
+            else return -1;
+            card += value * weights[i];
+        }
+        return card;
+    }
+
+    /**
+     * Finds the card completing two distinct cards to a set (featureSize 3 only).
+     */
+    public int complete(int a, int b) {
+        return pairs != null ? pairs[a * deckSize + b] : completePair(a, b);
+    }
+
+    private int completePair(int a, int b) {
+        int card = 0;
+        for (int i = 0, ia = a * featureCount, ib = b * featureCount; i < featureCount; ++i) {
+            int va = features[ia + i], vb = features[ib + i];
+            card += (va == vb ? va : 3 - va - vb) * weights[i];
+        }
+        return card;
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set (same as UtilImpl.testSet).
+     */
+    public boolean isSet(int[] cards) {
+        for (int i = 0; i < featureCount; ++i) {
+            int first = features[cards[0] * featureCount + i];
+            int seen = 0;
+            boolean same = true;
+            for (int card : cards) {
+                int value = features[card * featureCount + i];
+                same &= value == first;
+                seen |= 1 << value;
+            }
+            boolean different = Integer.bitCount(seen) == cards.length;
+            if (same == different) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the sets among the given distinct cards.
+     *
+     * @param cards  - an array holding the cards in its first length entries.
+     * @param length - the number of cards.
+     * @param limit  - the count to stop at.
+     * @return - the number of sets (at most limit).
+     */
+    public int countSets(int[] cards, int length, int limit) {
+        int[] index = new int[deckSize]; // position + 1 of each card among the given cards (0 if absent)
+        for (int i = 0; i < length; ++i)
+            index[cards[i]] = i + 1;
+        int r = featureSize - 1;
+        if (length < featureSize) return 0;
+        int[] combination = new int[r];
+        int[] combinationCards = new int[r];
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        int count = 0;
+        while (true) {
+            for (int i = 0; i < r; ++i)
+                combinationCards[i] = cards[combination[i]];
+            int completion = complete(combinationCards, r);
+            // counting every set once, from the combination of its first featureSize - 1 cards
+            if (completion >= 0 && index[completion] > combination[r - 1] + 1 && ++count >= limit)
+                return count;
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t >= 0 && combination[t] == length - r + t) --t;
+            if (t < 0) return count;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+
+    /**
+     * @return - true iff there is a set among the given distinct cards.
+     */
+    public boolean hasSet(int[] cards, int length) {
+        return countSets(cards, length, 1) > 0;
+    }
+}
@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A discrete-event game clock: simulated time passes at real speed while threads are working, and jumps ahead to the
+ * earliest pending wake-up once the threads waiting on the clock were given a short real pause to react (to the last
+ * jump, or to each other) without another thread advancing the clock in the meantime.
+ * A 60 seconds turn in which players are mostly frozen and the dealer mostly waits takes a few hundred pauses instead
+ * of 60 seconds. Threads blocked outside the clock (e.g. waiting for the dealer's verdict) don't hold it back, but a
+ * thread that parks on the clock (the dealer waiting for player events) does while it works on what woke it up: the
+ * time doesn't jump in the middle of the dealer's work, so a recorded game can be replayed.
+ */
+public class SimulatedClock implements GameClock {
+
+    /**
+     * The real time given to the threads between jumps of the clock.
+     */
+    private final long pauseNanos;
+
+    /**
+     * The system times at which the clock was created.
+     */
+    private final long startMillis;
+    private final long startNanos;
+
+    /**
+     * The total time skipped by the jumps so far (written under the lock).
+     */
+    private volatile long skippedMillis;
+
+    /**
+     * The System.nanoTime() of the last jump (accessed under the lock).
+     */
+    private long lastJumpNanos;
+
+    /**
+     * The wake-up times of the threads waiting on the clock (accessed under the lock).
+     */
+    private final PriorityQueue<Long> deadlines;
+
+    /**
+     * The threads that parked on the clock, and the threads waiting on the clock now (accessed under the lock).
+     */
+    private final Set<Thread> parkers;
+    private final Set<Thread> waiters;
+
+    private final ReentrantLock lock;
+
+    /**
+     * Signaled when the clock jumps, so sleepers whose deadline was reached wake up at once.
+     */
+    private final Condition jumped;
+
+    /**
+     * @param pauseNanos - the real time given to the threads between jumps of the clock.
+     */
+    public SimulatedClock(long pauseNanos) {
+        this.pauseNanos = Math.max(1_000, pauseNanos);
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.deadlines = new PriorityQueue<>();
+        this.parkers = new HashSet<>();
+        this.waiters = new HashSet<>();
+        this.lock = new ReentrantLock();
+        this.jumped = lock.newCondition();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return startMillis + (System.nanoTime() - startNanos) / 1_000_000L + skippedMillis;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        lock.lock();
+        long deadline = currentTimeMillis() + millis;
+        deadlines.add(deadline);
+        waiters.add(Thread.currentThread());
+        try {
+            for (long remaining = millis; remaining > 0; remaining = deadline - currentTimeMillis()) {
+                if (jumped.awaitNanos(Math.min(remaining * 1_000_000L, pauseNanos)) <= 0) // nobody jumped meanwhile
+                    jumpTo(deadline);
+            }
+        } finally {
+            deadlines.remove(deadline);
+            waiters.remove(Thread.currentThread());
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void park(Object blocker, long millis) {
+        if (millis <= 0) return;
+        long deadline = register(millis);
+        try {
+            long parkNanos = Math.min(millis * 1_000_000L, pauseNanos);
+            long start = System.nanoTime();
+            LockSupport.parkNanos(blocker, parkNanos);
+            if (System.nanoTime() - start >= parkNanos) { // not unparked, nothing happened during the pause
+                lock.lock();
+                try {
+                    jumpTo(deadline);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            unregister(deadline);
+        }
+    }
+
+    /**
+     * @return - the deadline of a wait for the given time, registered as a pending wake-up.
+     */
+    private long register(long millis) {
+        long deadline = currentTimeMillis() + millis;
+        lock.lock();
+        try {
+            deadlines.add(deadline);
+            parkers.add(Thread.currentThread());
+            waiters.add(Thread.currentThread());
+        } finally {
+            lock.unlock();
+        }
+        return deadline;
+    }
+
+    private void unregister(long deadline) {
+        lock.lock();
+        try {
+            deadlines.remove(deadline);
+            waiters.remove(Thread.currentThread());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Skips the time until the deadline, if it is the earliest pending wake-up, the clock hasn't jumped during the
+     * last pause and no thread that parks on the clock is working. Called while holding the lock.
+     */
+    private void jumpTo(long deadline) {
+        long now = System.nanoTime();
+        Long first = deadlines.peek();
+        if (first == null || first != deadline || now - lastJumpNanos < pauseNanos) return;
+        for (Thread parker : parkers)
+            if (parker.isAlive() && !waiters.contains(parker)) return; // the time passes at real speed meanwhile
+        long gap = deadline - currentTimeMillis();
+        if (gap > 0) {
+            skippedMillis += gap;
+            lastJumpNanos = now;
+            jumped.signalAll();
+        }
+    }
+
+    /**
+     * @return - the total time skipped so far.
+     */
+    public long skippedMillis() {
+        return skippedMillis;
+    }
+}
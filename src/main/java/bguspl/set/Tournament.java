@@ -0,0 +1,156 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Runs many headless games of computer players concurrently and reports their aggregated results.
+ * Every game has its own environment, table, dealer and players and runs as a task of a work-stealing pool (the
+ * dealer runs on the pool thread). The games run on the simulated clock, and the random stream of every game is split
+ * from the configured seed, so a tournament is reproducible up to the interleaving of the threads.
+ */
+public class Tournament {
+
+    /**
+     * The outcome of a single game.
+     */
+    private static class GameResult {
+        int[] scores;
+        int[] winners;
+        int claims;
+        long realNanos;
+        long simulatedMillis;
+    }
+
+    /**
+     * The tournament's main function.
+     *
+     * @param args - the number of games (default 1000), the number of computer players in every game (default the
+     *             configured number, at least 2) and the number of games played concurrently (default the number of
+     *             cores).
+     */
+    public static void main(String[] args) {
+        Logger logger = Main.initLogger("SetTournamentLogger", "tournament_");
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+
+        Properties properties = Config.loadProperties("config.properties", logger);
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int players = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(2, Integer.parseInt(properties.getProperty("ComputerPlayers", "0")));
+        int cores = Runtime.getRuntime().availableProcessors();
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+
+        headless(properties, players);
+        properties.setProperty("ClockMode", "simulated");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        GameRandom seeds = new GameRandom(logger, config);
+
+        MetricsServer metricsServer = MetricsServer.start(config, logger);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ForkJoinTask<GameResult>> tasks = new ArrayList<>(games);
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            long seed = seeds.split().nextLong();
+            String name = "game-" + i;
+            tasks.add(pool.submit(() -> {
+                Logger gameLogger = config.logPerGame ? Main.gameLogger(logger, name) : logger;
+                try {
+                    return play(new Env(gameLogger, config, new HeadlessUserInterface(), util,
+                            new GameRandom(gameLogger, seed)));
+                } finally {
+                    Main.closeGameLogger(gameLogger, logger);
+                }
+            }));
+        }
+        List<GameResult> results = new ArrayList<>(games);
+        for (ForkJoinTask<GameResult> task : tasks)
+            results.add(task.join());
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+        if (metricsServer != null) metricsServer.stop();
+
+        String report = report(results, players, elapsedNanos, parallelism, cores);
+        System.out.println(report);
+        logger.severe(report);
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+
+    /**
+     * Configures games of computer players without a display, logging warnings only (many games share the log), unless
+     * every game logs to its own file.
+     */
+    static void headless(Properties properties, int players) {
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("Hints", "False");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("TurnTimeoutWarningSeconds", "0"); // no countdown display to refresh frequently
+        if (!Boolean.parseBoolean(properties.getProperty("LogPerGame", "False")))
+            properties.setProperty("LogLevel", "WARNING");
+    }
+
+    /**
+     * Plays a whole game on the calling thread.
+     */
+    private static GameResult play(Env env) {
+        Game game = new Game(env);
+        long startMillis = env.clock.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        game.run();
+        GameResult result = new GameResult();
+        result.realNanos = System.nanoTime() - startNanos;
+        result.simulatedMillis = env.clock.currentTimeMillis() - startMillis;
+        result.scores = Arrays.stream(game.players).mapToInt(Player::getScore).toArray();
+        result.winners = game.dealer.getWinners();
+        result.claims = game.dealer.getClaims();
+        return result;
+    }
+
+    /**
+     * Aggregates the results of the games.
+     */
+    private static String report(List<GameResult> results, int players, long elapsedNanos, int parallelism, int cores) {
+        double seconds = elapsedNanos / 1e9;
+        long[] durations = results.stream().mapToLong(r -> r.realNanos).sorted().toArray();
+        long claims = results.stream().mapToLong(r -> r.claims).sum();
+        long points = results.stream().flatMapToInt(r -> Arrays.stream(r.scores)).sum();
+        double gameSeconds = Arrays.stream(durations).sum() / 1e9;
+        double[] wins = new double[players];
+        for (GameResult result : results)
+            if (result.winners != null)
+                for (int winner : result.winners)
+                    wins[winner] += 1.0 / result.winners.length; // a tie splits the win
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d games of %d computer players in %.2fs (%d concurrent, %d cores): %.1f games/s, %.2f games/s/core%n",
+                results.size(), players, seconds, parallelism, cores, results.size() / seconds, results.size() / seconds / cores));
+        report.append(String.format("game duration: mean %.1fms, p50 %.1fms, max %.1fms (mean simulated %.1fs)%n",
+                gameSeconds * 1000 / Math.max(1, durations.length), percentile(durations, 0.5) / 1e6,
+                percentile(durations, 1) / 1e6, results.stream().mapToLong(r -> r.simulatedMillis).average().orElse(0) / 1000));
+        report.append(String.format("claims: %d (%d points), %.0f claims/s overall, %.0f claims/s per game%n",
+                claims, points, claims / seconds, gameSeconds == 0 ? 0 : claims / gameSeconds));
+        report.append("win rate:");
+        for (int i = 0; i < players; i++)
+            report.append(String.format(" player %d %.1f%%", i + 1, 100 * wins[i] / Math.max(1, results.size())));
+        return report.toString();
+    }
+
+    /**
+     * @return - the value at the given fraction of the sorted values (0 if there are none).
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
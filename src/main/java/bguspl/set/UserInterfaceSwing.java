@@ -8,6 +8,7 @@ import java.io.FileNotFoundException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -28,7 +29,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
-    public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+    /**
+     * Card images by resource name, loaded once and shared by all the game windows.
+     */
+    private static final ConcurrentHashMap<String, Image> images = new ConcurrentHashMap<>();
+
+    /**
+     * @param onClose - called when the window is closed with the X button.
+     * @param exit    - true iff closing the window exits the application (false for a window of a hosted table).
+     */
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, Runnable onClose, boolean exit) {
 
         this.config = config;
         timerPanel = new TimerPanel();
@@ -61,10 +71,10 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         setTitle("Set Card Game");
         setLocationRelativeTo(null);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(exit ? JFrame.EXIT_ON_CLOSE : JFrame.DISPOSE_ON_CLOSE);
 
         addKeyListener(new InputManager(logger, config, players));
-        addWindowListener(new WindowManager());
+        addWindowListener(new WindowManager(onClose));
 
         EventQueue.invokeLater(() -> setVisible(true));
     }
@@ -108,16 +118,24 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
+        /**
+         * The number of columns in the grid, including the columns of extra slots
+         */
+        private final int gridColumns;
+
         private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
+            return images.computeIfAbsent(filename, name -> {
+                URL imageResource = getClass().getClassLoader().getResource(name);
+                if (imageResource == null)
+                    throw new RuntimeException(new FileNotFoundException(name));
+                return new ImageIcon(imageResource).getImage();
+            });
         }
 
         private GamePanel() {
 
-            setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
+            gridColumns = config.columns + (config.extraSlots + config.rows - 1) / config.rows;
+            setPreferredSize(new Dimension(gridColumns * config.cellWidth, config.rows * config.cellHeight));
 
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
@@ -128,13 +146,14 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                 deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
             emptyCard = loadImageResource("cards/empty_card.png");
 
-            grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            grid = new Image[config.rows][gridColumns];
+            tokenText = new JLabel[config.rows][gridColumns];
+            playerTokens = new boolean[config.players][config.rows][gridColumns];
             for (int row = 0; row < config.rows; row++) {
-                for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                for (int column = 0; column < gridColumns; column++) {
+                    // init the cards on the table grid as empty cards (extra slots are hidden until used)
+                    boolean extra = column >= config.columns;
+                    grid[row][column] = extra ? null : emptyCard;
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -143,42 +162,46 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                     tokenText[row][column].setOpaque(false);
                     tokenText[row][column].setBorder(BorderFactory.createLineBorder(Color.black));
                     tokenText[row][column].setBounds((column * config.cellWidth), (row * config.cellHeight), config.cellWidth, config.cellHeight);
+                    tokenText[row][column].setVisible(!extra);
                     add(tokenText[row][column]);
                 }
             }
         }
 
         private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
+            int row = rowOf(slot);
+            int column = columnOf(slot);
             grid[row][column] = deck[card];
+            tokenText[row][column].setVisible(true);
             validate();
             repaint();
         }
 
         private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
+            int row = rowOf(slot);
+            int column = columnOf(slot);
+            boolean extra = column >= config.columns;
+            grid[row][column] = extra ? null : emptyCard; // hiding an emptied extra slot
+            tokenText[row][column].setVisible(!extra);
             validate();
             repaint();
         }
 
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
+            int row = rowOf(slot);
+            int column = columnOf(slot);
             playerTokens[player][row][column] = true;
             tokenText[row][column].setText(generatePlayersTokenText(row, column));
         }
 
         private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
+            for (int i = 0; i < config.maxTableSize; i++)
                 removeTokens(i);
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
+            int row = rowOf(slot);
+            int column = columnOf(slot);
             for (int player = 0; player < playerTokens.length; player++) {
                 playerTokens[player][row][column] = false;
                 tokenText[row][column].setText(generatePlayersTokenText(row, column));
@@ -186,12 +209,22 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
+            int row = rowOf(slot);
+            int column = columnOf(slot);
             playerTokens[player][row][column] = false;
             tokenText[row][column].setText(generatePlayersTokenText(row, column));
         }
 
+        private int rowOf(int slot) {
+            if (slot < config.tableSize) return slot / config.columns;
+            return (slot - config.tableSize) % config.rows; // extra slots are filled column by column
+        }
+
+        private int columnOf(int slot) {
+            if (slot < config.tableSize) return slot % config.columns;
+            return config.columns + (slot - config.tableSize) / config.rows;
+        }
+
         private String generatePlayersTokenText(int row, int column) {
             String text = "";
             for (int player = 0; player < config.players; player++) {
@@ -207,8 +240,9 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         public void paintComponent(Graphics g) {
             // draw card images
             for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+                for (int column = 0; column < gridColumns; column++)
+                    if (grid[row][column] != null)
+                        g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
         }
     }
 
@@ -66,6 +66,13 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        long start = System.nanoTime();
+        List<int[]> sets = search(deck, count);
+        GameEvents.findSets(deck.size(), count, sets.size(), System.nanoTime() - start);
+        return sets;
+    }
+
+    private List<int[]> search(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -0,0 +1,202 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A game clock whose time passes only when it is advanced, for replaying a recorded game: the replay moves the clock
+ * to the wake-ups of the waiting threads and to the times of the recorded events, so the timeouts, freezes and table
+ * delays of the game end at the same game times as when it was recorded, however fast the threads run.
+ * A thread parked on the clock (the dealer waiting for player events) returns when the time reaches its deadline or
+ * when the parked threads are released, but not when it is unparked by another thread, so the replay decides when the
+ * dealer handles the player events. Once the clock is held, parked threads return only when released.
+ */
+public class VirtualClock implements GameClock {
+
+    /**
+     * A thread waiting on the clock.
+     */
+    private static final class Waiter {
+        final Thread thread;
+        final long deadline;
+        final boolean parked;
+
+        /**
+         * The number of releases when the thread parked.
+         */
+        final long release;
+
+        Waiter(long deadline, boolean parked, long release) {
+            this.thread = Thread.currentThread();
+            this.deadline = deadline;
+            this.parked = parked;
+            this.release = release;
+        }
+    }
+
+    /**
+     * The current time (written under the lock).
+     */
+    private volatile long now;
+
+    /**
+     * The threads waiting on the clock (accessed under the lock).
+     */
+    private final List<Waiter> waiters;
+
+    /**
+     * True iff parked threads return only when released, and the number of releases of the parked threads so far
+     * (accessed under the lock).
+     */
+    private boolean held;
+    private long releases;
+
+    private final ReentrantLock lock;
+
+    /**
+     * Signaled when the time advances or the parked threads are released.
+     */
+    private final Condition changed;
+
+    /**
+     * @param startMillis - the time the clock starts at.
+     */
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+        this.waiters = new ArrayList<>();
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        lock.lock();
+        Waiter waiter = new Waiter(now + millis, false, 0);
+        waiters.add(waiter);
+        try {
+            while (waits(waiter))
+                changed.await();
+        } finally {
+            waiters.remove(waiter);
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void park(Object blocker, long millis) {
+        if (millis <= 0) return;
+        lock.lock();
+        Waiter waiter = new Waiter(now + millis, true, releases);
+        waiters.add(waiter);
+        try {
+            while (waits(waiter))
+                changed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters.remove(waiter);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - true iff the waiting thread has to go on waiting. Called while holding the lock.
+     */
+    private boolean waits(Waiter waiter) {
+        if (waiter.parked && waiter.release != releases) return false;
+        return waiter.parked && held || now < waiter.deadline;
+    }
+
+    /**
+     * Moves the clock forward to the given time (does nothing if the time has already passed).
+     */
+    public void advanceTo(long millis) {
+        lock.lock();
+        try {
+            if (millis > now) {
+                now = millis;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - the earliest wake-up still ahead of the threads waiting on the clock (Long.MAX_VALUE if none).
+     */
+    public long nextDeadline() {
+        lock.lock();
+        try {
+            long next = Long.MAX_VALUE;
+            for (Waiter waiter : waiters) // a held thread may wait past its deadline
+                if (waiter.deadline > now && waiter.deadline < next) next = waiter.deadline;
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the parked threads parked until release() from now on (even when the time reaches their deadlines).
+     */
+    public void hold() {
+        lock.lock();
+        try {
+            held = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the threads parked now return.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            releases++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - the number of threads parked on the clock and not released yet.
+     */
+    public int parked() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Waiter waiter : waiters)
+                if (waiter.parked && waits(waiter)) count++;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - true iff the thread waits on the clock and goes on waiting (false if its wait is over, even if it
+     * hasn't returned yet).
+     */
+    public boolean waiting(Thread thread) {
+        lock.lock();
+        try {
+            for (Waiter waiter : waiters)
+                if (waiter.thread == thread && waits(waiter)) return true;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer/single-consumer queue of key actions (slots) of a player.
+ * The producer is the keyboard or AI thread, the consumer is the player thread. Actions are kept as primitives in a
+ * pre-allocated ring, so no objects are allocated per key press.
+ * Instead of removing actions from the middle of the queue, the dealer invalidates slots (or the whole queue) by
+ * advancing an epoch. Every action is stamped with the epoch it was offered in, and actions which are older than the
+ * invalidation of their slot are skipped by the consumer. The player's tokens are stamped the same way, so the player
+ * thread drops its tokens on invalidated slots without the dealer touching them. Invalidated actions don't count toward the capacity: the
+ * producer skips the invalidated actions at the head of the queue, and accepts a key press as long as fewer than
+ * capacity valid actions are pending.
+ *
+ * @inv 0 <= tail - head <= ring.length
+ */
+class ActionQueue {
+
+    /**
+     * The ring of actions, each entry holds the epoch in the high 32 bits and the slot in the low 32 bits.
+     */
+    private final long[] ring;
+
+    /**
+     * Mask used for mapping a sequence into the ring (the ring length is a power of 2).
+     */
+    private final int mask;
+
+    /**
+     * The maximum number of pending actions.
+     */
+    private final int capacity;
+
+    /**
+     * Sequence of the next action to take (advanced by the consumer, or by the producer past invalidated actions).
+     */
+    private final AtomicLong head;
+
+    /**
+     * Sequence of the next action to offer (written by the producer only).
+     */
+    private final AtomicLong tail;
+
+    /**
+     * The consumer thread while it is parked waiting for an action (null otherwise).
+     */
+    private volatile Thread waiter;
+
+    /**
+     * The current epoch (advanced by the dealer on every invalidation).
+     */
+    private final AtomicInteger epoch;
+
+    /**
+     * The epoch in which the whole queue was last cleared.
+     */
+    private volatile int clearEpoch;
+
+    /**
+     * The epoch in which each slot was last invalidated.
+     */
+    private final AtomicIntegerArray slotEpochs;
+
+    /**
+     * @param capacity - the maximum number of pending actions.
+     * @param slots    - the number of slots on the table.
+     */
+    ActionQueue(int capacity, int slots) {
+        int length = Integer.highestOneBit(Math.max(1, 2 * capacity - 1)) << 1; // room for invalidated actions
+        this.ring = new long[length];
+        this.mask = length - 1;
+        this.capacity = capacity;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.epoch = new AtomicInteger();
+        this.slotEpochs = new AtomicIntegerArray(slots);
+    }
+
+    /**
+     * Adds an action without blocking. Called by the producer thread only.
+     *
+     * @param slot - the slot of the key pressed.
+     * @return - true iff the action was added, false if the queue is full.
+     */
+    boolean offer(int slot) {
+        long t = tail.get();
+        long h = head.get();
+        while (h < t && !isValid(ring[(int) h & mask])) { // skipping the invalidated actions at the head
+            head.compareAndSet(h, h + 1); // fails if the consumer took the action meanwhile
+            h = head.get();
+        }
+        if (t - h >= ring.length || t - h >= capacity && pending(h, t) >= capacity) return false;
+        ring[(int) t & mask] = ((long) epoch.get() << 32) | slot;
+        tail.set(t + 1); // publishing the action (must precede reading the waiter)
+        Thread consumer = waiter;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Takes the next valid action, waiting if there is none. Called by the consumer thread only.
+     *
+     * @return - the slot of the next action.
+     * @throws InterruptedException - if the consumer was interrupted, before or while waiting (even if an action is
+     *                              pending, which is left in the queue).
+     */
+    int take() throws InterruptedException {
+        while (true) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            long h = head.get();
+            if (h < tail.get()) {
+                long entry = ring[(int) h & mask];
+                if (!head.compareAndSet(h, h + 1)) continue; // skipped by the producer meanwhile
+                if (isValid(entry)) return (int) entry;
+                continue; // the slot was invalidated after this action was offered
+            }
+            waiter = Thread.currentThread();
+            if (h == tail.get()) // rechecking after publishing the waiter, so an offer cannot be missed
+                LockSupport.park(this);
+            waiter = null;
+        }
+    }
+
+    /**
+     * @return - true iff the consumer is waiting for an action (none is pending).
+     */
+    boolean waiting() {
+        return waiter != null && head.get() == tail.get();
+    }
+
+    /**
+     * Invalidates all pending actions on the given slots. Called by the dealer.
+     *
+     * @param slots - the slots whose pending actions are no longer relevant.
+     */
+    void invalidate(int[] slots) {
+        int e = epoch.incrementAndGet();
+        for (int slot : slots)
+            slotEpochs.set(slot, e);
+    }
+
+    /**
+     * Invalidates all pending actions. Called by the dealer.
+     */
+    void clear() {
+        clearEpoch = epoch.incrementAndGet();
+    }
+
+    /**
+     * @return - the current epoch, for stamping a token placed now (see isValid).
+     */
+    int epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * @param slot  - a slot.
+     * @param stamp - the epoch read when a token was placed on the slot.
+     * @return - true iff neither the slot nor the whole queue was invalidated since, so the token is still relevant.
+     */
+    boolean isValid(int slot, int stamp) {
+        return stamp >= clearEpoch && stamp >= slotEpochs.get(slot);
+    }
+
+    /**
+     * @return - the number of pending valid actions (an estimate when called concurrently with the consumer).
+     */
+    int size() {
+        return pending(head.get(), tail.get());
+    }
+
+    /**
+     * @return - the number of valid actions between the given sequences.
+     */
+    private int pending(long from, long to) {
+        int size = 0;
+        for (long s = from; s < to; s++)
+            if (isValid(ring[(int) s & mask]))
+                size++;
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no pending valid actions.
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private boolean isValid(long entry) {
+        return isValid((int) entry, (int) (entry >>> 32));
+    }
+}
@@ -0,0 +1,235 @@
+package bguspl.set.ex;
+
+import bguspl.set.SetUniverse;
+
+/**
+ * Plays the games of a GameArena, advancing every running game of a range by one player action per step.
+ * The rules are the dealer's (in the random deal mode, without extra slots): cards are drawn from the deck at random
+ * into empty slots, a claimed set is checked with the same rules as UtilImpl.testSet (through the SetUniverse), its
+ * cards are removed and the tokens on them are dropped, the table is returned to the deck and dealt again when it has
+ * no set or the turn times out, and the game ends when no set is left on the table and in the deck.
+ * A player action places or removes one token. A player with featureSize - 1 tokens places its last token on the card
+ * completing a set with probability skill (if that card is on the table), otherwise it toggles a random slot. After a
+ * penalty the player's tokens are removed, as if the player started looking for a set again.
+ * An engine keeps scratch arrays and is used by one thread; several engines may step disjoint ranges of the same arena.
+ */
+public class ArenaEngine {
+
+    private final GameArena arena;
+    private final SetUniverse universe;
+
+    /**
+     * The probability that a player about to complete a claim picks the card completing a set.
+     */
+    private final double skill;
+
+    /**
+     * The number of steps without a set after which the table is dealt again (as the turn timeout).
+     */
+    private final int turnSteps;
+
+    /**
+     * Scratch arrays for the claimed cards and for the cards of a table and deck.
+     */
+    private final int[] claim;
+    private final int[] cards;
+
+    /**
+     * @param arena     - the games.
+     * @param universe  - the set arithmetic of the arena's deck.
+     * @param skill     - the probability that a player completing a claim picks the card completing a set.
+     * @param turnSteps - the number of steps without a set after which the table is dealt again.
+     */
+    public ArenaEngine(GameArena arena, SetUniverse universe, double skill, int turnSteps) {
+        if (universe.deckSize() != arena.deckSize())
+            throw new IllegalArgumentException("the arena's deck doesn't match the universe");
+        this.arena = arena;
+        this.universe = universe;
+        this.skill = skill;
+        this.turnSteps = turnSteps;
+        this.claim = new int[universe.featureSize()];
+        this.cards = new int[arena.deckSize()];
+    }
+
+    /**
+     * Starts a new game: a full deck, an empty table dealt from it, no tokens and no scores.
+     *
+     * @param game - the game number.
+     * @param seed - the seed of the game's random generator.
+     */
+    public void start(int game, long seed) {
+        arena.seed(game, seed);
+        for (int card = 0; card < arena.deckSize(); card++)
+            arena.deckCard(game, card, card);
+        arena.deckCount(game, arena.deckSize());
+        for (int slot = 0; slot < arena.tableSize(); slot++)
+            arena.card(game, slot, -1);
+        for (int player = 0; player < arena.players(); player++) {
+            arena.tokens(game, player, 0);
+            arena.score(game, player, 0);
+            arena.penalties(game, player, 0);
+        }
+        arena.status(game, GameArena.RUNNING);
+        arena.reshuffles(game, 0);
+        arena.sets(game, 0);
+        arena.steps(game, 0);
+        arena.turnSteps(game, 0);
+        deal(game);
+    }
+
+    /**
+     * Advances every running game in a range by one player action.
+     *
+     * @param from - the first game (inclusive).
+     * @param to   - the last game (exclusive).
+     * @return - the number of games of the range still running.
+     */
+    public int step(int from, int to) {
+        int running = 0;
+        for (int game = from; game < to; game++) {
+            if (arena.isOver(game)) continue;
+            step(game);
+            if (!arena.isOver(game)) running++;
+        }
+        return running;
+    }
+
+    /**
+     * Plays the games of a range until they are all over or the step limit is reached.
+     *
+     * @param maxSteps - the maximum number of steps.
+     * @return - the number of games of the range still running.
+     */
+    public int run(int from, int to, int maxSteps) {
+        int running = to - from;
+        for (int i = 0; i < maxSteps && running > 0; i++)
+            running = step(from, to);
+        return running;
+    }
+
+    private void step(int game) {
+        arena.steps(game, arena.steps(game) + 1);
+        int turn = arena.turnSteps(game) + 1;
+        arena.turnSteps(game, turn);
+        if (turn > turnSteps) { // turn timeout, the dealer deals the table again
+            reshuffle(game);
+            deal(game);
+            return;
+        }
+
+        int player = arena.nextInt(game, arena.players());
+        long mask = arena.tokens(game, player);
+        int count = Long.bitCount(mask);
+        int slot = -1;
+        if (count == claim.length - 1 && arena.nextInt(game, 1 << 20) < skill * (1 << 20))
+            slot = completionSlot(game, mask);
+        if (slot < 0) {
+            slot = arena.nextInt(game, arena.tableSize());
+            if (arena.card(game, slot) < 0) return; // a key press on an empty slot is ignored
+        }
+
+        long bit = 1L << slot;
+        if ((mask & bit) != 0) { // removing a token
+            arena.tokens(game, player, mask & ~bit);
+            return;
+        }
+        mask |= bit;
+        arena.tokens(game, player, mask);
+        if (Long.bitCount(mask) == claim.length)
+            rule(game, player, mask);
+    }
+
+    /**
+     * @return - the slot of the card completing the cards under the tokens to a set, or -1 if it isn't on the table.
+     */
+    private int completionSlot(int game, long mask) {
+        int n = 0;
+        for (long m = mask; m != 0; m &= m - 1)
+            claim[n++] = arena.card(game, Long.numberOfTrailingZeros(m));
+        int completion = universe.complete(claim, n);
+        if (completion < 0) return -1;
+        for (int slot = 0; slot < arena.tableSize(); slot++)
+            if (arena.card(game, slot) == completion) return slot;
+        return -1;
+    }
+
+    /**
+     * Rules on a claim, as the dealer does.
+     */
+    private void rule(int game, int player, long mask) {
+        int n = 0;
+        for (long m = mask; m != 0; m &= m - 1)
+            claim[n++] = arena.card(game, Long.numberOfTrailingZeros(m));
+        if (!universe.isSet(claim)) {
+            arena.penalties(game, player, arena.penalties(game, player) + 1);
+            arena.tokens(game, player, 0);
+            return;
+        }
+        arena.score(game, player, arena.score(game, player) + 1);
+        arena.sets(game, arena.sets(game) + 1);
+        arena.turnSteps(game, 0);
+        for (long m = mask; m != 0; m &= m - 1)
+            arena.card(game, Long.numberOfTrailingZeros(m), -1); // removing the cards
+        for (int other = 0; other < arena.players(); other++) // removing the tokens on the removed cards
+            arena.tokens(game, other, arena.tokens(game, other) & ~mask);
+        deal(game);
+    }
+
+    /**
+     * Places random cards from the deck on the empty slots, until the table has a set or no set is left in the game.
+     */
+    private void deal(int game) {
+        while (true) {
+            for (int slot = 0; slot < arena.tableSize(); slot++) {
+                int left = arena.deckCount(game);
+                if (left == 0) break;
+                if (arena.card(game, slot) >= 0) continue;
+                int index = arena.nextInt(game, left); // removing a random card from the deck
+                arena.card(game, slot, arena.deckCard(game, index));
+                arena.deckCard(game, index, arena.deckCard(game, left - 1));
+                arena.deckCount(game, left - 1);
+            }
+            int n = tableCards(game);
+            if (universe.hasSet(cards, n)) return;
+            for (int i = 0; i < arena.deckCount(game); i++)
+                cards[n++] = arena.deckCard(game, i);
+            if (!universe.hasSet(cards, n)) { // no more sets in the deck and on the table
+                arena.status(game, GameArena.OVER);
+                return;
+            }
+            reshuffle(game);
+        }
+    }
+
+    /**
+     * Copies the cards on the table into the scratch array.
+     *
+     * @return - the number of cards.
+     */
+    private int tableCards(int game) {
+        int n = 0;
+        for (int slot = 0; slot < arena.tableSize(); slot++) {
+            int card = arena.card(game, slot);
+            if (card >= 0) cards[n++] = card;
+        }
+        return n;
+    }
+
+    /**
+     * Returns all the cards on the table to the deck and removes all the tokens.
+     */
+    private void reshuffle(int game) {
+        int left = arena.deckCount(game);
+        for (int slot = 0; slot < arena.tableSize(); slot++) {
+            int card = arena.card(game, slot);
+            if (card < 0) continue;
+            arena.deckCard(game, left++, card);
+            arena.card(game, slot, -1);
+        }
+        arena.deckCount(game, left);
+        for (int player = 0; player < arena.players(); player++)
+            arena.tokens(game, player, 0);
+        arena.reshuffles(game, arena.reshuffles(game) + 1);
+        arena.turnSteps(game, 0);
+    }
+}
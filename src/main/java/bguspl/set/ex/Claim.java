@@ -0,0 +1,130 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A set claimed by a player, handed to the dealer and completed by it exactly once with a verdict.
+ * The claim keeps a snapshot of the claimed slots and cards, the table epoch at the time of the claim and the time
+ * it was submitted, so the dealer can detect stale claims and the claim latency can be measured.
+ */
+class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    final int player;
+
+    /**
+     * The claimed slots.
+     */
+    final int[] slots;
+
+    /**
+     * The cards on the claimed slots at the time of the claim (-1 for a slot that had no card).
+     */
+    final int[] cards;
+
+    /**
+     * The table epoch at the time of the claim.
+     */
+    final int epoch;
+
+    /**
+     * The System.nanoTime() at which the claim was submitted (when the player placed its last token).
+     */
+    final long submittedNanos;
+
+    /**
+     * The sequence of the claim in the dealer's events ring (set by the dealer when the claim is drained).
+     */
+    long sequence;
+
+    /**
+     * The System.nanoTime() at which the claim was completed (valid once the claim is done).
+     */
+    private volatile long completedNanos;
+
+    /**
+     * The dealer's verdict (null until the claim is completed).
+     */
+    private final AtomicReference<Player.Verdict> verdict;
+
+    /**
+     * Released once the verdict is set, a verdict given before the player waits is never lost.
+     */
+    private final CountDownLatch done;
+
+    Claim(int player, int[] slots, int[] cards, int epoch, long submittedNanos) {
+        this.player = player;
+        this.slots = slots;
+        this.cards = cards;
+        this.epoch = epoch;
+        this.submittedNanos = submittedNanos;
+        this.verdict = new AtomicReference<>();
+        this.done = new CountDownLatch(1);
+    }
+
+    /**
+     * Completes the claim with a verdict. Only the first completion takes effect.
+     *
+     * @param answer - the dealer's verdict.
+     * @return - true iff this call completed the claim.
+     */
+    boolean complete(Player.Verdict answer) {
+        long now = System.nanoTime();
+        if (!verdict.compareAndSet(null, answer)) return false;
+        completedNanos = now;
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Waits until the dealer completes the claim.
+     *
+     * @return - the dealer's verdict.
+     * @throws InterruptedException - if the waiting thread was interrupted.
+     */
+    Player.Verdict awaitVerdict() throws InterruptedException {
+        done.await();
+        return verdict.get();
+    }
+
+    /**
+     * @return - true iff the claim was completed.
+     */
+    boolean isDone() {
+        return verdict.get() != null;
+    }
+
+    /**
+     * @return - the verdict, or null if the claim wasn't completed yet.
+     */
+    Player.Verdict getVerdict() {
+        return verdict.get();
+    }
+
+    /**
+     * @return - the nanoseconds between submitting and completing the claim (valid once the claim is done).
+     */
+    long latencyNanos() {
+        return completedNanos - submittedNanos;
+    }
+
+    /**
+     * Checks whether the claimed cards are still on the claimed slots.
+     *
+     * @param table - the game table.
+     * @return - true iff the table still holds the claimed cards (false if a token was on an empty slot).
+     */
+    boolean isCurrent(Table table) {
+        for (int card : cards)
+            if (card < 0) return false; // never a set, even if the table didn't change since
+        if (epoch == table.epoch()) return true;
+        for (int i = 0; i < slots.length; i++) {
+            Integer card = table.slotToCard[slots[i]];
+            if (card == null || card != cards[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+package bguspl.set.ex;
+
+import bguspl.set.SetCounter;
+import bguspl.set.SetUniverse;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Chooses the cards the dealer deals into empty slots, so that the table contains a set whenever the deck allows it.
+ * Cards are drawn uniformly at random, as a regular deal. Only if the resulting table has no set, one of the sets
+ * that can be completed from the deck is chosen uniformly, and its missing cards replace some of the drawn cards.
+ * The time of a deal is bounded by enumerating the (featureSize - 1)-combinations of the table and deck cards once.
+ * A targeted deal instead searches for cards making the number of sets on the table fall in a target range, scoring
+ * every candidate card incrementally, within a time budget.
+ */
+class DealPlanner {
+
+    private final SetUniverse universe;
+
+    /**
+     * Counter of the sets on the candidate table of a targeted deal (reused between deals).
+     */
+    private final SetCounter counter;
+
+    /**
+     * The number of candidate tables evaluated and the number of sets on the chosen table, in the last targeted deal.
+     */
+    int lastCandidates;
+    int lastSets;
+
+    DealPlanner(SetUniverse universe) {
+        this.universe = universe;
+        this.counter = new SetCounter(universe);
+    }
+
+    /**
+     * Chooses the cards to deal (the deck itself is not changed).
+     *
+     * @param table  - the cards currently on the table.
+     * @param deck   - the cards left in the deck.
+     * @param count  - the number of cards to deal (at most the deck size).
+     * @param random - the random stream of the dealer.
+     * @return - the cards to deal.
+     */
+    int[] plan(List<Integer> table, List<Integer> deck, int count, SplittableRandom random) {
+        int[] drawn = drawRandom(deck, count, random);
+        if (count == 0 || hasSet(table, drawn)) return drawn; // the common case: a regular random deal
+
+        int[] set = chooseCompletableSet(table, deck, count, random);
+        if (set == null) return drawn; // no set can be completed from the deck, the dealer adds cards or reshuffles
+
+        // dealing the missing cards of the chosen set, and keeping drawn cards that are not part of it
+        boolean[] inSet = new boolean[universe.deckSize()];
+        for (int card : set)
+            inSet[card] = true;
+        for (int card : table)
+            inSet[card] = false; // only the cards missing from the table
+        int[] cards = new int[count];
+        int n = 0;
+        for (int card : set)
+            if (inSet[card]) cards[n++] = card;
+        for (int i = 0; i < drawn.length && n < count; i++)
+            if (!inSet[drawn[i]]) cards[n++] = drawn[i];
+        return cards;
+    }
+
+    /**
+     * Chooses the cards to deal so that the number of sets on the table is within a target range, if possible.
+     * Starting from a random draw, candidate tables differing by a single card are scored by the number of sets they
+     * hold (updated incrementally), and a replacement is kept if it doesn't take the table further from the range.
+     * When the budget runs out the closest table found is dealt, unless it has no set, in which case the cards are
+     * planned as a constructive deal.
+     *
+     * @param table       - the cards currently on the table.
+     * @param deck        - the cards left in the deck.
+     * @param count       - the number of cards to deal (at most the deck size).
+     * @param minSets     - the minimum number of sets aimed for.
+     * @param maxSets     - the maximum number of sets aimed for.
+     * @param budgetNanos - the time the search may take.
+     * @param random      - the random stream of the dealer.
+     * @return - the cards to deal.
+     */
+    int[] planTargeted(List<Integer> table, List<Integer> deck, int count, int minSets, int maxSets, long budgetNanos,
+                       SplittableRandom random) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int[] cards = drawRandom(deck, count, random);
+        counter.clear();
+        for (int card : table)
+            counter.add(card);
+        for (int card : cards)
+            counter.add(card);
+        int distance = distance(counter.sets(), minSets, maxSets);
+        lastCandidates = 1;
+        while (distance > 0 && count > 0 && count < deck.size() && System.nanoTime() < deadline) {
+            int i = random.nextInt(count);
+            int card = deck.get(random.nextInt(deck.size()));
+            if (counter.contains(card)) continue; // already dealt
+            counter.remove(cards[i]);
+            counter.add(card);
+            lastCandidates++;
+            int candidate = distance(counter.sets(), minSets, maxSets);
+            if (candidate <= distance) { // keeping the replacement (also when equal, to keep moving)
+                cards[i] = card;
+                distance = candidate;
+            }
+            else { // reverting the replacement
+                counter.remove(card);
+                counter.add(cards[i]);
+            }
+        }
+        lastSets = counter.sets();
+        if (lastSets == 0 && count > 0) { // the target can't be reached in time, at least the table has a set
+            cards = plan(table, deck, count, random);
+            lastSets = -1; // unknown
+        }
+        return cards;
+    }
+
+    /**
+     * @return - how many sets the table has to gain or lose to be in the target range.
+     */
+    private static int distance(int sets, int minSets, int maxSets) {
+        return sets < minSets ? minSets - sets : sets > maxSets ? sets - maxSets : 0;
+    }
+
+    /**
+     * Draws distinct cards uniformly at random.
+     */
+    private int[] drawRandom(List<Integer> deck, int count, SplittableRandom random) {
+        int[] indices = new int[deck.size()];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        int[] cards = new int[count];
+        for (int i = 0; i < count; i++) { // partial Fisher-Yates shuffle
+            int j = i + random.nextInt(indices.length - i);
+            int temp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = temp;
+            cards[i] = deck.get(indices[i]);
+        }
+        return cards;
+    }
+
+    private boolean hasSet(List<Integer> table, int[] drawn) {
+        int[] cards = new int[table.size() + drawn.length];
+        int n = 0;
+        for (int card : table)
+            cards[n++] = card;
+        for (int card : drawn)
+            cards[n++] = card;
+        return universe.hasSet(cards, n);
+    }
+
+    /**
+     * Chooses uniformly (by reservoir sampling) a set made of table and deck cards, that needs between 1 and count
+     * cards from the deck.
+     *
+     * @return - the cards of the set, or null if there is none.
+     */
+    private int[] chooseCompletableSet(List<Integer> table, List<Integer> deck, int count, SplittableRandom random) {
+        int[] cards = new int[table.size() + deck.size()];
+        boolean[] fromDeck = new boolean[universe.deckSize()];
+        int[] index = new int[universe.deckSize()]; // position + 1 of each card (0 if absent)
+        int length = 0;
+        for (int card : table)
+            cards[length++] = card;
+        for (int card : deck) {
+            fromDeck[card] = true;
+            cards[length++] = card;
+        }
+        for (int i = 0; i < length; i++)
+            index[cards[i]] = i + 1;
+
+        int r = universe.featureSize() - 1;
+        if (length <= r) return null;
+        int[] combination = new int[r];
+        int[] combinationCards = new int[r];
+        for (int i = 0; i < r; i++)
+            combination[i] = i;
+        int[] chosen = null;
+        int found = 0;
+        while (true) {
+            int needed = 0;
+            for (int i = 0; i < r; i++) {
+                combinationCards[i] = cards[combination[i]];
+                if (fromDeck[combinationCards[i]]) needed++;
+            }
+            if (needed <= count) {
+                int completion = universe.complete(combinationCards, r);
+                if (completion >= 0 && index[completion] > combination[r - 1] + 1) { // every set is seen once
+                    if (fromDeck[completion]) needed++;
+                    if (needed >= 1 && needed <= count && random.nextInt(++found) == 0) {
+                        chosen = new int[r + 1];
+                        System.arraycopy(combinationCards, 0, chosen, 0, r);
+                        chosen[r] = completion;
+                    }
+                }
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t >= 0 && combination[t] == length - r + t) --t;
+            if (t < 0) return chosen;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-
+import bguspl.set.GameEvents;
+import bguspl.set.GameJournal;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.Main;
+import bguspl.set.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -40,6 +50,21 @@ public class Dealer implements Runnable {
      */
     private final List<Integer> deck;
 
+    /**
+     * The random stream used for drawing cards from the deck.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Planner choosing the dealt cards so the table has a set, or a target number of sets (null when dealing randomly).
+     */
+    private final DealPlanner dealPlanner;
+
+    /**
+     * True iff the deal planner aims for the configured range of the number of sets on the table
+     */
+    private final boolean targetedDeal;
+
     /**
      * True iff game should be terminated due to an external event.
      */
@@ -62,20 +87,93 @@ public class Dealer implements Runnable {
     private final int shortSleepTime;
 
     /**
-     * Queue used for player id who clamied 'Set'
+     * Ring of player events (token placements and removals, set claims), consumed by the dealer thread only
+     */
+    protected final EventRing events;
+
+    /**
+     * Handler of the events drained from the ring
+     */
+    private final EventRing.EventHandler eventHandler;
+
+    /**
+     * Queue of the sets claimed by players, ordered by the time they were completed (accessed by the dealer thread only)
+     */
+    protected final Queue<Claim> setClaimers;
+
+    /**
+     * Order of the claims: by the time the last token was placed, then by the order they were published
+     */
+    private static final Comparator<Claim> CLAIM_ORDER = (a, b) -> a.submittedNanos != b.submittedNanos
+            ? Long.signum(a.submittedNanos - b.submittedNanos) : Long.compare(a.sequence, b.sequence);
+
+    /**
+     * Time a claim is held before it is ruled, letting claims completed earlier but published later overtake it
      */
-    protected final BlockingQueue<Integer> setClaimers; // mutual resource representing players which are claiming 'Set'
+    private final long fairnessWindowNanos;
+
+    /**
+     * Per player count, total and maximum of the time between completing a set and the dealer starting to rule on it
+     */
+    private final int[] claimCounts;
+    private final long[] totalQueueingNanos;
+    private final long[] maxQueueingNanos;
+
+    /**
+     * The ids of the winners (null until the winners are announced)
+     */
+    private volatile int[] winners;
+
+    /**
+     * Number of token placements and removals consumed from the events ring
+     */
+    private long tokenEvents;
+
+    /**
+     * Metrics: claims answered by verdict (indexed by ordinal), the busy time of an iteration of the dealer loop and the
+     * time spent looking for sets
+     */
+    private final Metrics.Counter[] verdictCounts;
+    private final Metrics.Counter[] jvmVerdictCounts;
+    private final LatencyHistogram loopNanos;
+    private final LatencyHistogram findSetsNanos;
+
+    /**
+     * The System.nanoTime() of the last sign of life of the dealer thread (an iteration of the dealer loop or a deal)
+     */
+    private volatile long heartbeatNanos;
+
+    /**
+     * Dumps the threads and the game when the dealer or a player stalls.
+     */
+    private final Watchdog watchdog;
+
+    /**
+     * The binary journal of the game's events, written by the dealer thread only (disabled unless configured).
+     */
+    private final GameJournal journal;
+
+    /**
+     * Threads validating and committing claims in parallel (null if claims are handled by the dealer thread only)
+     */
+    private ExecutorService validators;
 
     /**
      * Boolean used for signing whether board is ready or not/
      */
-    protected boolean boardReady;
+    protected volatile boolean boardReady;
 
     /**
      * Integer used for timer logic
      */
     private long timestamp;
 
+    /**
+     * True from a wake-up of the dealer until its wake-up was journaled (before its countdown update or its first
+     * player event, if any).
+     */
+    private boolean woke;
+
     /**
      * Integer used for sampling system time
      */
@@ -95,16 +193,68 @@ public class Dealer implements Runnable {
      * Constructor of Dealer
      */
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, null);
+    }
+
+    /**
+     * @param journal - the journal of the game's events (null for a new journal file in the logs directory, if
+     *                configured).
+     */
+    public Dealer(Env env, Table table, Player[] players, GameJournal journal) {
         this.env = env;
         this.table = table;
         this.players = players;
         this.deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        this.setClaimers = new LinkedBlockingQueue<>();
+        this.random = env.random.split(); // split before the players' streams
+        this.targetedDeal = env.config.dealMode.equals("targeted");
+        this.dealPlanner = targetedDeal || env.config.dealMode.equals("constructive") ? new DealPlanner(env.universe) : null;
+        this.events = new EventRing(Math.max(1024, players.length * 16), env.clock);
+        this.eventHandler = this::onEvent;
+        this.setClaimers = new PriorityQueue<>(CLAIM_ORDER);
+        this.fairnessWindowNanos = env.config.claimFairnessWindowMillis * 1_000_000L;
+        this.claimCounts = new int[players.length];
+        this.totalQueueingNanos = new long[players.length];
+        this.maxQueueingNanos = new long[players.length];
         this.boardReady = false;
         this.relevant = true;
         this.playerThreads = new Thread[players.length]; // create threads for players.
         this.normalSleepTime = 500;
         this.shortSleepTime = 10;
+        this.verdictCounts = new Metrics.Counter[Player.Verdict.values().length];
+        this.jvmVerdictCounts = new Metrics.Counter[verdictCounts.length];
+        for (Player.Verdict verdict : Player.Verdict.values()) {
+            String name = "claims" + verdict.name().charAt(0) + verdict.name().substring(1).toLowerCase();
+            verdictCounts[verdict.ordinal()] = env.metrics.counter(Metrics.DEALER, name);
+            jvmVerdictCounts[verdict.ordinal()] = Metrics.JVM.counter(Metrics.DEALER, name);
+        }
+        this.loopNanos = env.metrics.histogram(Metrics.DEALER, "loopNanos");
+        this.findSetsNanos = env.metrics.histogram(Metrics.DEALER, "findSetsNanos");
+        env.metrics.gauge(Metrics.DEALER, "claimsQueued", setClaimers::size); // sampled racily by the metrics readers
+        this.heartbeatNanos = System.nanoTime();
+        env.metrics.gauge(Metrics.DEALER, "heartbeatAgeNanos", this::heartbeatAgeNanos);
+        this.watchdog = new Watchdog(env, this, table, players, new File(Main.LOGS_DIRECTORY));
+        this.journal = journal != null ? journal : openJournal();
+    }
+
+    /**
+     * @return - a new journal file of the game in the logs directory, or the disabled journal if journals aren't
+     * configured (or the file can't be created).
+     */
+    private GameJournal openJournal() {
+        if (!env.config.journal) return GameJournal.DISABLED;
+        File directory = new File(Main.LOGS_DIRECTORY);
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        File file = new File(directory, "journal-" + env.metrics.game() + "-"
+                + new SimpleDateFormat("M-d_HH-mm-ss.SSS").format(new Date()) + ".sgj");
+        try {
+            GameJournal journal = GameJournal.open(file, env.clock, env.random.seed(), env.config.properties());
+            env.logger.log(Level.INFO, "journal of " + env.metrics.game() + ": " + file);
+            return journal;
+        } catch (IOException e) {
+            env.logger.log(Level.WARNING, "cannot create the journal " + file, e);
+            return GameJournal.DISABLED;
+        }
     }
 
     /**
@@ -114,11 +264,20 @@ public class Dealer implements Runnable {
     public void run() {
         dealerThread = Thread.currentThread();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting."); // updating log that dealer thread started
+        env.metrics.register(env.logger);
+        watchdog.start();
 
         for (int i = 0; i < players.length; i++) { // creating and starting player threads
-            playerThreads[i] = new Thread(players[i], "player " + players[i].id);
+            playerThreads[i] = env.threads.newThread(players[i], "player " + players[i].id);
             playerThreads[i].start();
         }
+        if (env.claimValidators != null)
+            validators = env.claimValidators; // shared with other games
+        else if (env.config.claimValidationThreads > 0) {
+            int[] count = {0};
+            validators = Executors.newFixedThreadPool(env.config.claimValidationThreads,
+                    task -> env.threads.newThread(task, "validator-" + count[0]++));
+        }
 
         while (!terminate) {
             placeCardsOnTable();
@@ -128,6 +287,13 @@ public class Dealer implements Runnable {
                 removeAllCardsFromTable(); //  removing all the cards from table and UI
         }
         announceWinners(); // announcing Winners
+        if (validators != null && validators != env.claimValidators) validators.shutdown();
+        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " consumed " + events.stats()
+                + " (" + tokenEvents + " token events)");
+        for (int i = 0; i < players.length; i++)
+            env.logger.log(Level.INFO, "player " + (i + 1) + " claims: " + claimCounts[i] + ", mean queueing delay "
+                    + (claimCounts[i] == 0 ? 0 : totalQueueingNanos[i] / claimCounts[i] / 1000) + "us, max "
+                    + maxQueueingNanos[i] / 1000 + "us");
 
         // waiting for player threads to end
         for (int i = players.length-1; i >= 0; i--) {
@@ -135,37 +301,120 @@ public class Dealer implements Runnable {
                 playerThreads[i].join();
             }catch (InterruptedException ignored){}
         }
+        watchdog.stop();
+        closeJournal();
+        env.metrics.unregister();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated."); // updating log that dealer thread ended
     }
 
+    /**
+     * Closes the journal, reporting whether it was cut short.
+     */
+    private void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            env.logger.log(Level.WARNING, "closing the journal failed", e);
+        }
+        if (journal.failure() != null)
+            env.logger.log(Level.WARNING, "the journal stopped early", journal.failure());
+    }
+
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
-    private void timerLoop() {
-        timestamp = System.currentTimeMillis(); // time of thread start
+    private void timerLoop() { // the countdown counts from its reset (by the deal before the loop)
         while (!terminate && timer >= 0) {
             sleepUntilWokenOrTimeout();
+            long busy = System.nanoTime(); // the time the iteration started working
+            heartbeatNanos = busy;
+            woke = true; // journaled with the first record of the wake-up, if any
             updateTimerDisplay(false);
-            if(removeCardsFromTable()){ // removing cards if needed
-                placeCardsOnTable(); // placing new cards if available
+            events.drain(eventHandler); // handling the player events published so far, in order
+            woke = false;
+            if(validators != null && setClaimers.size() > 1){ // validating the batch in parallel
+                if(removeCardsInParallel())
+                    placeCardsOnTable();
+            }
+            while(!terminate && nextClaimDelayNanos() == 0){ // handling all the claims of the batch
+                if(removeCardsFromTable()){ // removing cards if needed
+                    placeCardsOnTable(); // placing new cards if available
+                }
             }
             updateTimerDisplay(false);
+            loopNanos.record(System.nanoTime() - busy);
         }
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
      */
-    private void sleepUntilWokenOrTimeout() { // make the dealer sleep until timeout or element added to setClaimers queue
-        try {
-            if(timer > env.config.turnTimeoutWarningMillis) { // Regular sleep time or interrupted for some action
-                dealerThread.sleep(normalSleepTime);
+    private void sleepUntilWokenOrTimeout() { // make the dealer sleep until timeout or a claim is published to the events ring
+        long sleepTime = timer > env.config.turnTimeoutWarningMillis ? normalSleepTime : shortSleepTime;
+        long claimDelay = nextClaimDelayNanos(); // not sleeping past the fairness window of a held claim
+        if (claimDelay >= 0)
+            sleepTime = Math.min(sleepTime, (claimDelay + 999_999) / 1_000_000);
+        if (sleepTime > 0)
+            events.awaitEvents(sleepTime); // Regular/short sleep time or woken up for some action
+    }
+
+    /**
+     * Discards answered claims from the head of the claims queue.
+     *
+     * @return - the nanoseconds until the first claim can be ruled (0 if it can be ruled now, -1 if there is none).
+     */
+    private long nextClaimDelayNanos() {
+        Claim claim = setClaimers.peek();
+        while (claim != null && claim.isDone()) { // answered with 'IRRELEVANT' while queued
+            setClaimers.poll();
+            claim = setClaimers.peek();
+        }
+        if (claim == null) return -1;
+        return Math.max(0, fairnessWindowNanos - (System.nanoTime() - claim.submittedNanos));
+    }
+
+    /**
+     * Takes the first claim in completion order, if its fairness window has passed.
+     *
+     * @return - the claim, or null if there is no claim to rule on yet.
+     */
+    private Claim pollClaim() {
+        if (nextClaimDelayNanos() != 0) return null;
+        Claim claim = setClaimers.poll();
+        long queueing = System.nanoTime() - claim.submittedNanos;
+        claimCounts[claim.player]++;
+        totalQueueingNanos[claim.player] += queueing;
+        maxQueueingNanos[claim.player] = Math.max(maxQueueingNanos[claim.player], queueing);
+        return claim;
+    }
+
+    /**
+     * Handles a player event consumed from the events ring.
+     */
+    private void onEvent(EventRing.Event event) {
+        journalWake();
+        if (event.type == EventRing.CLAIM) {
+            journal.claim(event.player, event.claim.slots);
+            if (!event.claim.isDone()) { // claims of tokens removed in the meantime were already answered
+                event.claim.sequence = event.sequence();
+                setClaimers.add(event.claim);
             }
-            else
-                dealerThread.sleep(shortSleepTime); // Short sleep time or interrupted for some action
         }
-        catch (InterruptedException ignored) {
-                    env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " interrupted while wait for setCall");}
+        else {
+            Integer card = table.slotToCard[event.slot];
+            journal.token(event.player, event.slot, card == null ? -1 : card, event.type == EventRing.TOKEN_PLACED);
+            tokenEvents++;
+        }
+    }
+
+    /**
+     * Journals the wake-up of the dealer, once, before the first record of the wake-up.
+     */
+    private void journalWake() {
+        if (woke) {
+            woke = false;
+            journal.wake();
+        }
     }
 
     /**
@@ -173,28 +422,34 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if(!reset){
-            long temp = System.currentTimeMillis() - timestamp;
+            long now = env.clock.currentTimeMillis();
+            long temp = now - timestamp;
             if(timer>=env.config.turnTimeoutWarningMillis){
                 if(temp >= normalSleepTime){
-                    timestamp = System.currentTimeMillis(); // sampling timestamp
+                    timestamp = now; // sampling timestamp
                     env.ui.setCountdown(timer,false); // updating UI timer
                     timer -= temp;
+                    journalWake();
+                    journal.countdown(timer);
                 }
             }
             else{ // last turnTimeoutWarningMillis (usually 5 seconds in config)
                 if(timer>0){
                     if(temp>=shortSleepTime){
-                        timestamp = System.currentTimeMillis(); // sampling timestamp
+                        timestamp = now; // sampling timestamp
                         env.ui.setCountdown(timer,true); // updating UI timer
                         timer -= temp;
+                        journalWake();
+                        journal.countdown(timer);
                     }
                 }
             }
         }
         else{
+            timestamp = env.clock.currentTimeMillis();
+            journal.countdownReset(env.config.turnTimeoutMillis, timestamp);
             timer = env.config.turnTimeoutMillis;
             env.ui.setCountdown(timer,false);
-            timestamp = System.currentTimeMillis();
         }
     }
 
@@ -202,52 +457,171 @@ public class Dealer implements Runnable {
      * Check if any cards can be removed from the deck and placed on the table.
      * Includes mode of shuffling board cards if none available Sets on table.
      */
-    private void placeCardsOnTable() {
-        for(int slot=0; slot<table.slotToCard.length; slot++){
-            if(deck.size() > 0 && table.slotToCard[slot] == null ) { // empty places on table and deck isn't empty
-                int card = deck.remove((int)Math.floor(Math.random()*(deck.size()))); // removing random card from the deck
-                table.placeCard(card,slot);   // updating table on the array and updating display
-            }
-        }
-        table.hints();
-        updateTimerDisplay(true);
-        List<Integer> cardsToCheck = Arrays.stream(table.slotToCard).filter(Objects::nonNull).collect(Collectors.toList()); // creating list from table slots
-
-        if(!ensureSetOnTable){ // Regular Mode
-            boardReady = true; // board is ready for game - contains legal set
-            for(int i=0; i<players.length; i++) {
-                if (!players[i].human) {
-                    synchronized (players[i].aiThread) {
-                        players[i].aiThread.notifyAll(); // waking up AI threads
-                    }
+    void placeCardsOnTable() {
+        while(true){ // dealing again (instead of recursing) after a reshuffle
+            long start = System.nanoTime();
+            heartbeatNanos = start;
+            int decked = deck.size();
+            journal.deal(decked);
+            compactExtraSlots(); // moving extra cards into the regular slots emptied by a set
+            if(dealPlanner != null && ensureSetOnTable)
+                placePlannedCards();
+            for(int slot=0; slot<env.config.tableSize; slot++){
+                if(deck.size() > 0 && table.slotToCard[slot] == null ) { // empty places on table and deck isn't empty
+                    int card = deck.remove(random.nextInt(deck.size())); // removing random card from the deck
+                    table.placeCard(card,slot);   // updating table on the array and updating display
+                    journal.cardPlaced(slot, card);
                 }
             }
-            cardsToCheck.addAll(deck); // looking for set including the deck into the check
-            if(env.util.findSets(cardsToCheck, 1).size() == 0) //no more sets in deck and on table so announceWinners
+            GameEvents.tableChange("deal", decked - deck.size(), System.nanoTime() - start);
+            if(env.config.hints) table.hints(); // printing the sets on the table if asked to
+            updateTimerDisplay(true);
+            List<Integer> cardsToCheck = tableCards(); // creating list from table slots
+
+            if(!ensureSetOnTable){ // Regular Mode
+                boardReady = true; // board is ready for game - contains legal set
+                for (Player player : players)
+                    player.wakeArtificialIntelligence(); // waking up AI threads
+                cardsToCheck.addAll(deck); // looking for set including the deck into the check
+                if(!hasSet(cardsToCheck)) //no more sets in deck and on table so announceWinners
+                    announceWinners();
+                return;
+            }
+
+            // Special Mode for bonus mission - add extra cards, or shuffle, if set isn't exist on the table
+            boolean setOnTable = hasSet(cardsToCheck);
+            while(!setOnTable && placeExtraCards()) // growing the table while it has no set
+                setOnTable = hasSet(tableCards());
+            if(setOnTable){ // there is at least one set on the table
+                boardReady = true; // board is ready for game - contains legal set
+                for (Player player : players)
+                    player.wakeArtificialIntelligence(); // waking up AI threads
+                return;
+            }
+            cardsToCheck = tableCards();
+            cardsToCheck.addAll(deck);  // looking for set including the deck into the check
+            if(!hasSet(cardsToCheck)){ //no more sets in deck and on table
                 announceWinners();
+                return;
+            }
+            removeAllCardsFromTable();
         }
+    }
 
-        else{ // Special Mode for bonus mission - shuffle if set isn't exist on the table
-            if(env.util.findSets(cardsToCheck, 1).size() > 0){ // there is at least one set on the table
-                boardReady = true; // board is ready for game - contains legal set
-                for(int i=0; i<players.length; i++){
-                    if(!players[i].human){
-                        synchronized (players[i].aiThread) {
-                            players[i].aiThread.notifyAll(); // waking up AI threads
-                        }
-                    }
-                }
+    /**
+     * Fills the empty regular slots with cards chosen by the deal planner.
+     */
+    private void placePlannedCards() {
+        int empty = 0;
+        for(int slot=0; slot<env.config.tableSize; slot++)
+            if(table.slotToCard[slot] == null) empty++;
+        int count = Math.min(empty, deck.size());
+        int[] cards;
+        if(targetedDeal && count > 0){ // searching for cards giving the table the target number of sets
+            long start = System.nanoTime();
+            cards = dealPlanner.planTargeted(tableCards(), deck, count, env.config.targetSetsMin,
+                    env.config.targetSetsMax, env.config.dealBudgetMillis * 1_000_000L, random);
+            env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " planned " + count + " cards ("
+                    + dealPlanner.lastSets + " sets) from " + dealPlanner.lastCandidates + " candidates in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+        }
+        else
+            cards = dealPlanner.plan(tableCards(), deck, count, random);
+        for(int slot=0, i=0; slot<env.config.tableSize && i<cards.length; slot++){
+            if(table.slotToCard[slot] == null){
+                int card = cards[i++];
+                deck.remove(Integer.valueOf(card)); // removing the planned card from the deck
+                table.placeCard(card,slot);
+                journal.cardPlaced(slot, card);
             }
-            else{
-                cardsToCheck.addAll(deck);  // looking for set including the deck into the check
-                if(env.util.findSets(cardsToCheck, 1).size()==0)//no more sets in deck and on table
-                    announceWinners();
-                else{
-                    removeAllCardsFromTable();
-                    placeCardsOnTable();
-                }
+        }
+    }
+
+    /**
+     * @return - a list of the cards currently on the table.
+     */
+    private List<Integer> tableCards() {
+        return Arrays.stream(table.slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * @return - true iff there is a set among the given cards.
+     */
+    private boolean hasSet(List<Integer> cards) {
+        long start = System.nanoTime();
+        boolean found = env.util.findSets(cards, 1).size() > 0;
+        findSetsNanos.record(System.nanoTime() - start);
+        return found;
+    }
+
+    /**
+     * Answers a claim (counting the verdict), unless it was already answered.
+     *
+     * @param validationNanos - the time spent validating the claim (0 if it is answered without validating it).
+     * @return - true iff the claim was answered by this call.
+     */
+    private boolean answer(Claim claim, Player.Verdict verdict, long validationNanos) {
+        if (claim.isDone()) return false; // only the dealer answers claims
+        journal.verdict(claim.player, verdict.ordinal()); // journaled before the player wakes up and starts its freeze
+        if (verdict == Player.Verdict.POINT)
+            journal.score(claim.player, players[claim.player].getScore());
+        long freeze = verdict == Player.Verdict.POINT ? env.config.pointFreezeMillis
+                : verdict == Player.Verdict.PENALTY ? env.config.penaltyFreezeMillis : 0;
+        if (freeze > 0)
+            journal.freeze(claim.player, freeze);
+        claim.complete(verdict);
+        verdictCounts[verdict.ordinal()].increment();
+        jvmVerdictCounts[verdict.ordinal()].increment();
+        GameEvents.claimVerdict(claim.sequence, claim.player, verdict, validationNanos, claim.latencyNanos());
+        return true;
+    }
+
+    /**
+     * Places up to featureSize cards from the deck on the free extra slots (following the classic rule of adding cards
+     * when there is no set on the table).
+     *
+     * @return - true iff cards were placed.
+     */
+    private boolean placeExtraCards() {
+        long start = System.nanoTime();
+        int placed = 0;
+        for(int slot=env.config.tableSize; slot<table.slotToCard.length && placed<env.config.featureSize; slot++){
+            if(deck.size() > 0 && table.slotToCard[slot] == null){
+                int card = deck.remove(random.nextInt(deck.size())); // removing random card from the deck
+                table.placeCard(card,slot);
+                journal.cardPlaced(slot, card);
+                placed++;
             }
         }
+        if(placed > 0){
+            GameEvents.tableChange("extra", placed, System.nanoTime() - start);
+            env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " placed " + placed + " extra cards.");
+        }
+        return placed > 0;
+    }
+
+    /**
+     * Moves cards from the extra slots into empty regular slots, shrinking the table back to its regular size.
+     * Tokens and pending actions on the moved cards are dropped, as if the cards were removed.
+     */
+    private void compactExtraSlots() {
+        List<Integer> moved = new ArrayList<>();
+        int extra = env.config.tableSize;
+        for(int slot=0; slot<env.config.tableSize; slot++){
+            if(table.slotToCard[slot] != null) continue;
+            while(extra < table.slotToCard.length && table.slotToCard[extra] == null)
+                extra++;
+            if(extra == table.slotToCard.length) break; // no more extra cards
+            boardReady = false; // marking that the board isn't ready
+            table.moveCard(extra, slot);
+            journal.cardMoved(extra, slot);
+            moved.add(extra);
+        }
+        if(!moved.isEmpty()){
+            int[] slots = moved.stream().mapToInt(Integer::intValue).toArray();
+            fixPlayersActionsQueue(slots);
+            fixPlayersTokens(slots, Collections.emptyList());
+        }
     }
 
     /**
@@ -255,63 +629,140 @@ public class Dealer implements Runnable {
      * Ensures that all players actionQueues and tokens list are updated.
      */
     private boolean removeCardsFromTable() {// go to the sync queue check if there is a set and removed the card from the table.
-        Integer player = -1;
         boolean ans = false;
-        player = setClaimers.poll(); // wait until player call for a set (using Blocking Queue special method poll)
-        if(player!=null){
-            int[] setSlots = new int[players[player].getTokens().size()];
-            for(int i=0; i<setSlots.length; i++) // creating array from players tokens list
-                setSlots[i] = players[player].getTokens().get(i);
-
-            int[] setCards = new int[setSlots.length];
-            for(int i=0; i<setCards.length; i++) //convert player's tokens to set of cards
-                setCards[i] = table.slotToCard[setSlots[i]];
-
-            if(env.util.testSet(setCards)){ // set is legal
+        Claim claim = pollClaim(); // the earliest completed claim drained from the events ring
+        if(claim!=null){
+            int player = claim.player;
+            int[] setSlots = claim.slots;
+            int[] setCards = claim.cards;
+
+            long validation = System.nanoTime();
+            boolean current = claim.isCurrent(table);
+            boolean legal = current && env.util.testSet(setCards);
+            validation = System.nanoTime() - validation;
+            Player.Verdict verdict = !current ? Player.Verdict.IRRELEVANT // the claimed cards were replaced meanwhile
+                    : legal ? Player.Verdict.POINT : Player.Verdict.PENALTY;
+            if(legal){ // set is legal
                 boardReady = false; // marking that the board isn't ready
-                for (int slot : setSlots) {
-                    table.removeCard(slot); // removing cards from table
+                for (int i = 0; i < setSlots.length; i++) {
+                    table.removeCard(setSlots[i]); // removing cards from table
+                    journal.cardRemoved(setSlots[i], setCards[i]);
                 }
                 fixPlayersActionsQueue(setSlots); // removing the slots from actionsQueue of each player if needed
-                fixPlayersTokens(setSlots); // removing the card from other players tokens list
+                fixPlayersTokens(setSlots, Collections.singletonList(claim)); // removing the card from other players tokens list
                 players[player].point(); // point the player
                 ans = true;
             }
-            else{
-                players[player].penalty();
-            }
-            synchronized(players[player]){ //waking the player after making a decision
-                players[player].notify();
-                env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " notified " + player + " with the answer " + players[player].answer);
-            }
+            answer(claim, verdict, validation); //waking the player after making a decision
+            if (env.logger.isLoggable(Level.INFO))
+                env.logger.log(Level.INFO, "Thread {0} notified {1} with the answer {2} after {3}us",
+                        new Object[]{Thread.currentThread().getName(), player, claim.getVerdict(), claim.latencyNanos() / 1000});
             return ans;
         }
         return false;
     }
 
     /**
-     * Removing the tokens of a given set from all players tokens list.
+     * Handles all the claims that can be ruled at once: validates them in parallel, commits the legal claims that
+     * don't share slots with an earlier legal claim (removing their cards on the dealer thread, since the ui isn't
+     * thread-safe), and answers the rest.
+     * Answers are the same as when handling the claims one by one in completion order: a claim sharing a slot with an
+     * earlier legal claim is irrelevant, since its cards are removed by the earlier claim.
+     *
+     * @return - true iff cards were removed from the table.
      */
-    private void fixPlayersTokens(int[] slots){ // removing the verified set from players tokens.
-        for (int i=0; i<players.length; i++) { // iterating through all players
-            boolean remove = false;
-            for(Integer slot : slots){ // iterating through the given Set slots
-                if (players[i].tokens.contains(slot)) {
-                    players[i].tokens.remove(slot);
-                    remove = true;
-                }
+    private boolean removeCardsInParallel() {
+        List<Claim> batch = new ArrayList<>(setClaimers.size());
+        for (Claim claim = pollClaim(); claim != null; claim = pollClaim())
+            batch.add(claim); // in completion order
+        if (batch.isEmpty()) return false;
+
+        // validating: the table isn't changed during this phase, so claims are checked concurrently
+        List<Future<Player.Verdict>> validations = new ArrayList<>(batch.size());
+        long[] validationNanos = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Claim claim = batch.get(i);
+            int index = i;
+            validations.add(validators.submit(() -> {
+                long start = System.nanoTime();
+                Player.Verdict verdict = !claim.isCurrent(table) ? Player.Verdict.IRRELEVANT
+                        : env.util.testSet(claim.cards) ? Player.Verdict.POINT : Player.Verdict.PENALTY;
+                validationNanos[index] = System.nanoTime() - start; // read after the future is done
+                return verdict;
+            }));
+        }
+        Player.Verdict[] verdicts = new Player.Verdict[batch.size()];
+        for (int i = 0; i < verdicts.length; i++)
+            verdicts[i] = await(validations.get(i), Player.Verdict.IRRELEVANT);
+
+        // resolving conflicts in completion order
+        boolean[] removed = new boolean[table.slotToCard.length];
+        List<Claim> winners = new ArrayList<>();
+        for (int i = 0; i < verdicts.length; i++) {
+            boolean conflict = false;
+            for (int slot : batch.get(i).slots)
+                conflict |= removed[slot];
+            if (conflict)
+                verdicts[i] = Player.Verdict.IRRELEVANT;
+            else if (verdicts[i] == Player.Verdict.POINT) {
+                for (int slot : batch.get(i).slots)
+                    removed[slot] = true;
+                winners.add(batch.get(i));
             }
-            if(remove){ // removing a player from setClaimers queue and waking him up with 'IRRELEVANT' answer
-                Integer id = players[i].id;
-                synchronized (setClaimers) {
-                    if(setClaimers.remove(id)){ // remove returns true if removal was done successfully
-                        synchronized (players[i]){
-                            players[i].irrelevant();
-                            players[i].notifyAll(); // waking the player
-                        }
-                    }
+        }
+
+        // committing the disjoint legal claims, in completion order
+        if (!winners.isEmpty()) {
+            boardReady = false; // marking that the board isn't ready
+            for (Claim claim : winners)
+                for (int i = 0; i < claim.slots.length; i++) {
+                    table.removeCard(claim.slots[i]); // removing cards from table
+                    journal.cardRemoved(claim.slots[i], claim.cards[i]);
                 }
-            }
+            int[] slots = IntStream.range(0, removed.length).filter(slot -> removed[slot]).toArray();
+            fixPlayersActionsQueue(slots); // removing the slots from actionsQueue of each player if needed
+            fixPlayersTokens(slots, batch); // removing the cards from other players tokens list
+        }
+
+        for (int i = 0; i < verdicts.length; i++) { // answering the players
+            Claim claim = batch.get(i);
+            if (verdicts[i] == Player.Verdict.POINT) players[claim.player].point();
+            if (answer(claim, verdicts[i], validationNanos[i]) && env.logger.isLoggable(Level.INFO))
+                env.logger.log(Level.INFO, "Thread {0} notified {1} with the answer {2} after {3}us",
+                        new Object[]{Thread.currentThread().getName(), claim.player, verdicts[i], claim.latencyNanos() / 1000});
+        }
+        return !winners.isEmpty();
+    }
+
+    /**
+     * Waits for a task of the validators, returning a fallback value if it failed.
+     */
+    private <T> T await(Future<T> task, T fallback) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            env.logger.log(Level.SEVERE, "claim task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return fallback;
+    }
+
+    /**
+     * Answers the pending claims on the given slots with 'IRRELEVANT', except for the claims being answered by the
+     * caller. The players drop their tokens on the slots themselves, once the slots were invalidated in their
+     * actionsQueue (fixPlayersActionsQueue).
+     */
+    private void fixPlayersTokens(int[] slots, Collection<Claim> answering){
+        for (Player player : players) { // a pending claim (queued or still in the ring) holds the player's tokens
+            Claim claim = player.lastClaim;
+            if (claim == null || claim.isDone() || answering.contains(claim)) continue;
+            boolean removed = false;
+            for (int slot : slots)
+                for (int claimed : claim.slots)
+                    removed |= slot == claimed;
+            if (removed) // skipped when it is polled
+                answer(claim, Player.Verdict.IRRELEVANT, 0);
         }
     }
 
@@ -319,19 +770,8 @@ public class Dealer implements Runnable {
      * Removing the Set slots from player's next actions queue.
      */
     private void fixPlayersActionsQueue(int[] slots){ // removing irrelevant slots from players queue
-        for(int i=0; i<players.length; i++){ // iterating through all players and building new actionsQueue for them
-            if(!players[i].actionsQueue.isEmpty()){
-                Iterator<Integer> it = players[i].actionsQueue.iterator(); // iterator for queue
-                while (it.hasNext()) {
-                    Integer temp = it.next();
-                    for (int slot : slots) { // iterating through all slots
-                        if (temp == slot) {
-                            it.remove(); // removes the last element that was loaded by next() method.
-                        }
-                    }
-                }
-            }
-        }
+        for (Player player : players) // invalidating the slots in every player's actionsQueue (skipped when taken)
+            player.actionsQueue.invalidate(slots);
     }
 
     /**
@@ -339,23 +779,29 @@ public class Dealer implements Runnable {
      */
     void removeAllCardsFromTable() {
         boardReady = false; // marking that board is not ready
-        synchronized(setClaimers){ // avoiding the player from calling a set
-            for(int slot=0; slot<table.slotToCard.length; slot++){
-                if(table.slotToCard[slot] != null){
-                    int card = table.slotToCard[slot];
-                    table.removeCard(slot);
-                    deck.add(card); // put the card back in the deck
-                }
+        long start = System.nanoTime();
+        int decked = deck.size();
+        for(int slot=0; slot<table.slotToCard.length; slot++){
+            if(table.slotToCard[slot] != null){
+                int card = table.slotToCard[slot];
+                table.removeCard(slot);
+                journal.cardRemoved(slot, card);
+                deck.add(card); // put the card back in the deck
             }
-            setClaimers.clear(); // clearing the setClaimers queue
         }
-        for(int i=0; i< players.length; i++){ // clearing all players tokens and actionsQueue
-            players[i].tokens.clear();
+        GameEvents.tableChange("return", deck.size() - decked, System.nanoTime() - start);
+        List<Claim> stale = new ArrayList<>(); // claims published after the last drain, on the cards returned
+        events.drain(event -> { // discarded, not journaled after the next deal with the cards dealt then
+            if (event.type == EventRing.CLAIM) stale.add(event.claim);
+        });
+        setClaimers.clear(); // clearing the setClaimers queue
+        for(int i=0; i< players.length; i++){ // clearing all players actionsQueue (the players drop their tokens)
             players[i].actionsQueue.clear();
-            synchronized (players[i]){ // waking up all waiting players
-                players[i].irrelevant();
-                players[i].notifyAll();
-            }
+            Claim claim = players[i].lastClaim;
+            if(claim != null && stale.contains(claim)) // never journaled, so its verdict isn't either
+                claim.complete(Player.Verdict.IRRELEVANT);
+            else if(claim != null) // waking up a waiting player
+                answer(claim, Player.Verdict.IRRELEVANT, 0);
         }
     }
 
@@ -382,7 +828,9 @@ public class Dealer implements Runnable {
                     t++;
                 }
             }
+            journal.end(winners);
             env.ui.announceWinner(winners);
+            this.winners = winners;
             terminate();
             relevant = false;
             return winnerCounter;
@@ -390,6 +838,44 @@ public class Dealer implements Runnable {
         return 0;
     }
 
+    /**
+     * @return - the ids of the winners, or null if the game was terminated before the winners were announced.
+     */
+    public int[] getWinners() {
+        return winners;
+    }
+
+    /**
+     * @return - the number of claims ruled by the dealer so far (exact once the dealer ended, approximate while it runs).
+     */
+    public int getClaims() {
+        int claims = 0;
+        for (int count : claimCounts)
+            claims += count;
+        return claims;
+    }
+
+    /**
+     * @return - the nanoseconds since the last sign of life of the dealer thread.
+     */
+    long heartbeatAgeNanos() {
+        return System.nanoTime() - heartbeatNanos;
+    }
+
+    /**
+     * @return - the milliseconds left on the countdown (approximate while the dealer runs).
+     */
+    long countdownMillis() {
+        return timer;
+    }
+
+    /**
+     * @return - the number of cards left in the deck (approximate while the dealer runs).
+     */
+    int deckSize() {
+        return deck.size();
+    }
+
     /**
      * Called when the game should be terminated due to an external event.
      */
@@ -397,5 +883,6 @@ public class Dealer implements Runnable {
         for (int i = players.length-1 ; i >= 0; i--) // terminating from last to first for bonus
             players[i].terminate();
         terminate = true;
+        events.close(); // no more events will be consumed
     }
 }
\ No newline at end of file
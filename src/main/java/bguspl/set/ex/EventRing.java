@@ -0,0 +1,273 @@
+package bguspl.set.ex;
+
+import bguspl.set.GameClock;
+import bguspl.set.RealTimeClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pre-allocated ring of player events (token placements, token removals and set claims).
+ * Player threads publish events, each one is given a sequence number, and the dealer thread is the single consumer
+ * that handles them in sequence order. Event objects are reused, publishing an event does not allocate.
+ * The consumer waits for events in awaitEvents, it is woken up by claims and when the ring becomes half full.
+ */
+class EventRing {
+
+    /**
+     * Event types.
+     */
+    static final int TOKEN_PLACED = 0;
+    static final int TOKEN_REMOVED = 1;
+    static final int CLAIM = 2;
+
+    /**
+     * A reusable ring entry.
+     */
+    static final class Event {
+
+        /**
+         * The sequence of the event held by this entry (set last, when the event is published).
+         */
+        private volatile long sequence = -1;
+
+        int type;
+        int player;
+        int slot;
+        Claim claim;
+
+        /**
+         * The System.nanoTime() at which the event was published.
+         */
+        long publishedNanos;
+
+        long sequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * Callback used by the consumer for handling events.
+     */
+    interface EventHandler {
+        void onEvent(Event event);
+    }
+
+    private final Event[] events;
+
+    /**
+     * The clock the consumer waits on.
+     */
+    private final GameClock clock;
+
+    /**
+     * Mask used for mapping a sequence into the ring (the ring length is a power of 2).
+     */
+    private final int mask;
+
+    /**
+     * The next sequence to be claimed by a publisher.
+     */
+    private final AtomicLong next;
+
+    /**
+     * The next sequence to be consumed (written by the consumer only).
+     */
+    private volatile long consumed;
+
+    /**
+     * True iff no more events will be consumed (publishers stop waiting for free space).
+     */
+    private volatile boolean closed;
+
+    /**
+     * The consumer thread while it waits for events (null otherwise).
+     */
+    private volatile Thread waiter;
+
+    /**
+     * True iff a publisher asked to wake up the consumer since it last woke up.
+     */
+    private volatile boolean wakeRequested;
+
+    /**
+     * Statistics of the consumed events (accessed by the consumer only).
+     */
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private long batches;
+
+    /**
+     * @param minCapacity - the minimum number of events the ring holds (rounded up to a power of 2).
+     */
+    EventRing(int minCapacity) {
+        this(minCapacity, new RealTimeClock());
+    }
+
+    /**
+     * @param minCapacity - the minimum number of events the ring holds (rounded up to a power of 2).
+     * @param clock       - the clock the consumer waits on.
+     */
+    EventRing(int minCapacity, GameClock clock) {
+        this.clock = clock;
+        int length = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.events = new Event[length];
+        for (int i = 0; i < length; i++)
+            events[i] = new Event();
+        this.mask = length - 1;
+        this.next = new AtomicLong();
+    }
+
+    /**
+     * Publishes a token event.
+     *
+     * @param placed - true for a token placement, false for a token removal.
+     * @return - the sequence of the event, -1 if the ring was closed.
+     */
+    long publishToken(int player, int slot, boolean placed) {
+        return publish(placed ? TOKEN_PLACED : TOKEN_REMOVED, player, slot, null);
+    }
+
+    /**
+     * Publishes a set claim.
+     *
+     * @return - the sequence of the event, -1 if the ring was closed.
+     */
+    long publishClaim(Claim claim) {
+        return publish(CLAIM, claim.player, -1, claim);
+    }
+
+    /**
+     * Publishes the placement of the token completing a set together with the set's claim: the consumer handles both in
+     * the same drain, never the token without the claim.
+     *
+     * @return - the sequence of the claim event, -1 if the ring was closed.
+     */
+    long publishSet(int slot, Claim claim) {
+        long sequence = next.getAndAdd(2);
+        Event token = entry(sequence);
+        Event set = entry(sequence + 1);
+        if (token == null || set == null) return -1;
+        write(token, TOKEN_PLACED, claim.player, slot, null);
+        write(set, CLAIM, claim.player, -1, claim);
+        set.sequence = sequence + 1;
+        token.sequence = sequence; // making both events visible to the consumer
+        wakeConsumer();
+        return sequence + 1;
+    }
+
+    private long publish(int type, int player, int slot, Claim claim) {
+        long sequence = next.getAndIncrement();
+        Event event = entry(sequence);
+        if (event == null) return -1;
+        write(event, type, player, slot, claim);
+        event.sequence = sequence; // making the event visible to the consumer
+        if (type == CLAIM || sequence - consumed >= events.length / 2)
+            wakeConsumer();
+        return sequence;
+    }
+
+    /**
+     * @return - the entry of the given sequence once the consumer freed it, null if the ring was closed meanwhile.
+     */
+    private Event entry(long sequence) {
+        while (sequence - consumed >= events.length) { // waiting for the consumer to free the entry
+            if (closed) return null;
+            LockSupport.parkNanos(this, 100_000);
+        }
+        return events[(int) sequence & mask];
+    }
+
+    private static void write(Event event, int type, int player, int slot, Claim claim) {
+        event.type = type;
+        event.player = player;
+        event.slot = slot;
+        event.claim = claim;
+        event.publishedNanos = System.nanoTime();
+    }
+
+    private void wakeConsumer() {
+        wakeRequested = true;
+        Thread consumer = waiter;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Waits until a claim is published, the ring is half full, or the timeout passes. Called by the consumer thread
+     * only, before draining the ring.
+     *
+     * @param timeoutMillis - the maximum time to wait.
+     */
+    void awaitEvents(long timeoutMillis) {
+        waiter = Thread.currentThread();
+        if (!wakeRequested && !closed) // checked after publishing the waiter, so a wake up cannot be missed
+            clock.park(this, timeoutMillis);
+        waiter = null;
+        wakeRequested = false; // events published before this point are handled by the next drain
+    }
+
+    /**
+     * Handles all the events published so far, in sequence order. Called by the consumer thread only.
+     *
+     * @param handler - the handler called for each event.
+     * @return - the number of events handled.
+     */
+    int drain(EventHandler handler) {
+        long sequence = consumed;
+        int count = 0;
+        while (true) {
+            Event event = events[(int) sequence & mask];
+            if (event.sequence != sequence) break; // not published yet
+            long latency = System.nanoTime() - event.publishedNanos;
+            totalLatencyNanos += latency;
+            if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+            handler.onEvent(event);
+            event.claim = null;
+            sequence++;
+            count++;
+            consumed = sequence; // freeing the entry
+        }
+        if (count > 0) batches++;
+        return count;
+    }
+
+    /**
+     * Stops publishers from waiting for free space once the consumer is gone.
+     */
+    void close() {
+        closed = true;
+        wakeConsumer();
+    }
+
+    /**
+     * @return - the number of events consumed so far.
+     */
+    long consumed() {
+        return consumed;
+    }
+
+    /**
+     * @return - the number of events published (or being published) so far.
+     */
+    long published() {
+        return next.get();
+    }
+
+    /**
+     * @return - true iff the events before the given sequence were published (the consumer can handle them).
+     */
+    boolean isPublished(long sequence) {
+        for (long s = consumed; s < sequence; s++)
+            if (events[(int) s & mask].sequence != s) return false;
+        return true;
+    }
+
+    /**
+     * @return - a summary of the consumed events (called by the consumer thread).
+     */
+    String stats() {
+        long count = consumed;
+        return count + " events in " + batches + " batches, mean publish-to-consume latency "
+                + (count == 0 ? 0 : totalLatencyNanos / count / 1000) + "us, max " + maxLatencyNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,276 @@
+package bguspl.set.ex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The state of many simulated games, stored off-heap as a struct of arrays.
+ * Every field of every game lives in a direct buffer indexed by the game number, instead of in Dealer, Table and
+ * Player objects with boxed card lists: a game of the default configuration (81 cards, 12 slots, 2 players) takes
+ * about 160 bytes, so hundreds of thousands of games fit in a few dozens of megabytes.
+ * The arena only stores the state, the rules are applied by an ArenaEngine. Not thread safe: threads may work on
+ * disjoint ranges of games concurrently.
+ */
+public class GameArena {
+
+    /**
+     * Status of a game.
+     */
+    public static final int RUNNING = 0;
+    public static final int OVER = 1;
+
+    private final int games;
+    private final int deckSize;
+    private final int tableSize;
+    private final int players;
+
+    /**
+     * The number of bytes of a card in the decks (1 for decks of up to 256 cards, 2 otherwise).
+     */
+    private final int cardBytes;
+
+    /**
+     * The cards left in the deck of every game (in the first deckCount entries of the game's deckSize entries).
+     */
+    private final ByteBuffer decks;
+    private final ByteBuffer deckCounts;
+
+    /**
+     * The card on every slot of every game (-1 for an empty slot).
+     */
+    private final ByteBuffer slots;
+
+    /**
+     * The tokens of every player of every game, as a bit mask of slots.
+     */
+    private final ByteBuffer tokens;
+
+    /**
+     * The score and the number of penalties of every player of every game.
+     */
+    private final ByteBuffer scores;
+    private final ByteBuffer penalties;
+
+    /**
+     * The random generator state of every game.
+     */
+    private final ByteBuffer random;
+
+    /**
+     * Per game counters: status, reshuffles, sets found, steps played and steps since the last set.
+     */
+    private final ByteBuffer counters;
+
+    private static final int STATUS = 0;
+    private static final int RESHUFFLES = 1;
+    private static final int SETS = 2;
+    private static final int STEPS = 3;
+    private static final int TURN_STEPS = 4;
+    private static final int COUNTERS = 5;
+
+    /**
+     * @param games     - the number of games.
+     * @param deckSize  - the number of cards in a full deck.
+     * @param tableSize - the number of slots on a table (at most 64).
+     * @param players   - the number of players in a game.
+     */
+    public GameArena(int games, int deckSize, int tableSize, int players) {
+        if (tableSize > Long.SIZE)
+            throw new IllegalArgumentException("unsupported table size " + tableSize);
+        this.games = games;
+        this.deckSize = deckSize;
+        this.tableSize = tableSize;
+        this.players = players;
+        this.cardBytes = deckSize <= 256 ? 1 : 2;
+        this.decks = allocate((long) games * deckSize * cardBytes);
+        this.deckCounts = allocate((long) games * Short.BYTES);
+        this.slots = allocate((long) games * tableSize * Short.BYTES);
+        this.tokens = allocate((long) games * players * Long.BYTES);
+        this.scores = allocate((long) games * players * Short.BYTES);
+        this.penalties = allocate((long) games * players * Short.BYTES);
+        this.random = allocate((long) games * Long.BYTES);
+        this.counters = allocate((long) games * COUNTERS * Integer.BYTES);
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("arena field of " + bytes + " bytes is too large");
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    public int games() {
+        return games;
+    }
+
+    public int deckSize() {
+        return deckSize;
+    }
+
+    public int tableSize() {
+        return tableSize;
+    }
+
+    public int players() {
+        return players;
+    }
+
+    /**
+     * @return - the number of bytes the arena takes.
+     */
+    public long bytes() {
+        return (long) decks.capacity() + deckCounts.capacity() + slots.capacity() + tokens.capacity()
+                + scores.capacity() + penalties.capacity() + random.capacity() + counters.capacity();
+    }
+
+    // deck
+
+    public int deckCount(int game) {
+        return deckCounts.getShort(game * Short.BYTES);
+    }
+
+    void deckCount(int game, int count) {
+        deckCounts.putShort(game * Short.BYTES, (short) count);
+    }
+
+    /**
+     * @return - the card at the given index of the game's deck.
+     */
+    public int deckCard(int game, int index) {
+        int at = (game * deckSize + index) * cardBytes;
+        return cardBytes == 1 ? decks.get(at) & 0xff : decks.getShort(at) & 0xffff;
+    }
+
+    void deckCard(int game, int index, int card) {
+        int at = (game * deckSize + index) * cardBytes;
+        if (cardBytes == 1) decks.put(at, (byte) card);
+        else decks.putShort(at, (short) card);
+    }
+
+    // table
+
+    /**
+     * @return - the card on the slot, or -1 if the slot is empty.
+     */
+    public int card(int game, int slot) {
+        return slots.getShort((game * tableSize + slot) * Short.BYTES);
+    }
+
+    void card(int game, int slot, int card) {
+        slots.putShort((game * tableSize + slot) * Short.BYTES, (short) card);
+    }
+
+    // players
+
+    /**
+     * @return - the slots the player has tokens on, as a bit mask.
+     */
+    public long tokens(int game, int player) {
+        return tokens.getLong((game * players + player) * Long.BYTES);
+    }
+
+    void tokens(int game, int player, long mask) {
+        tokens.putLong((game * players + player) * Long.BYTES, mask);
+    }
+
+    public int score(int game, int player) {
+        return scores.getShort((game * players + player) * Short.BYTES);
+    }
+
+    void score(int game, int player, int score) {
+        scores.putShort((game * players + player) * Short.BYTES, (short) score);
+    }
+
+    public int penalties(int game, int player) {
+        return penalties.getShort((game * players + player) * Short.BYTES);
+    }
+
+    void penalties(int game, int player, int count) {
+        penalties.putShort((game * players + player) * Short.BYTES, (short) count);
+    }
+
+    // random generator (SplitMix64, so a game is reproduced from its seed)
+
+    void seed(int game, long seed) {
+        random.putLong(game * Long.BYTES, seed);
+    }
+
+    /**
+     * @return - a uniformly distributed random number between 0 (inclusive) and bound (exclusive).
+     */
+    int nextInt(int game, int bound) {
+        int at = game * Long.BYTES;
+        long state = random.getLong(at) + 0x9e3779b97f4a7c15L;
+        random.putLong(at, state);
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+
+    // counters
+
+    private int counter(int game, int counter) {
+        return counters.getInt((game * COUNTERS + counter) * Integer.BYTES);
+    }
+
+    private void counter(int game, int counter, int value) {
+        counters.putInt((game * COUNTERS + counter) * Integer.BYTES, value);
+    }
+
+    public int status(int game) {
+        return counter(game, STATUS);
+    }
+
+    void status(int game, int status) {
+        counter(game, STATUS, status);
+    }
+
+    public boolean isOver(int game) {
+        return status(game) == OVER;
+    }
+
+    /**
+     * @return - the number of times the table was returned to the deck (no set on the table, or a turn timeout).
+     */
+    public int reshuffles(int game) {
+        return counter(game, RESHUFFLES);
+    }
+
+    void reshuffles(int game, int count) {
+        counter(game, RESHUFFLES, count);
+    }
+
+    /**
+     * @return - the number of sets found.
+     */
+    public int sets(int game) {
+        return counter(game, SETS);
+    }
+
+    void sets(int game, int count) {
+        counter(game, SETS, count);
+    }
+
+    /**
+     * @return - the number of steps played.
+     */
+    public int steps(int game) {
+        return counter(game, STEPS);
+    }
+
+    void steps(int game, int count) {
+        counter(game, STEPS, count);
+    }
+
+    /**
+     * @return - the number of steps played since the last set was found (or the table was reshuffled).
+     */
+    public int turnSteps(int game) {
+        return counter(game, TURN_STEPS);
+    }
+
+    void turnSteps(int game, int count) {
+        counter(game, TURN_STEPS, count);
+    }
+}
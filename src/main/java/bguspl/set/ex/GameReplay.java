@@ -0,0 +1,538 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameRandom;
+import bguspl.set.GameThreadFactory;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a recorded game journal through the real dealer, table and players, and verifies that the replayed game
+ * journals the same events: the same deals and cards, the same claims, verdicts, freezes and scores, and the same
+ * winners. The game is rebuilt from the seed and the configuration in the journal's header, so the dealer draws the
+ * same cards, and runs on a virtual clock, so its countdowns, freezes and table delays end at the recorded game times.
+ * The clock advances only while all the game's threads wait (on the clock, or for a key press), to the next wake-up of
+ * a waiting thread, never past the time of the next recorded event, either at once (as fast as possible) or after
+ * waiting for the time to pass at a chosen speed; when the dealer journals an event recorded later, the clock jumps to
+ * the recorded time. The dealer is held whenever it waits for player events, and is released at its recorded
+ * wake-ups: the tokens the dealer got in a wake-up are pressed (in the recorded order) before it is released to handle
+ * them, and a wake-up that updated the countdown is released at the time the dealer read the clock, as derived from the
+ * recorded countdown (which counts down by the dealer's wake-ups). The players answered by the dealer start their
+ * freezes before the clock moves on.
+ * A replay reproduces a game in which the player events reached the dealer in the order they took effect. A press
+ * performed on a card the dealer was removing at the same moment, a deal planned under a time budget (the targeted deal
+ * mode), or a freeze that ended on the real clock while the dealer was working, may not be reproduced, the replay then
+ * reports the first event it could not reproduce.
+ */
+public class GameReplay {
+
+    /**
+     * The real time the replay waits between checks of the game's threads.
+     */
+    private static final long POLL_NANOS = 50_000;
+
+    /**
+     * The real time without progress after which the replay gives up.
+     */
+    private static final long STALL_NANOS = 5_000_000_000L;
+
+    /**
+     * The outcome of a replay.
+     */
+    public static final class Result {
+
+        /**
+         * The number of recorded events and the number reproduced.
+         */
+        public final int events;
+        public final int replayed;
+
+        /**
+         * The first event that could not be reproduced (null if the whole game was reproduced).
+         */
+        public final String divergence;
+
+        /**
+         * The recorded scores and the replayed scores.
+         */
+        public final int[] recordedScores;
+        public final int[] scores;
+
+        /**
+         * The real duration of the replay and the game duration replayed.
+         */
+        public final long realNanos;
+        public final long gameMillis;
+
+        Result(int events, int replayed, String divergence, int[] recordedScores, int[] scores, long realNanos, long gameMillis) {
+            this.events = events;
+            this.replayed = replayed;
+            this.divergence = divergence;
+            this.recordedScores = recordedScores;
+            this.scores = scores;
+            this.realNanos = realNanos;
+            this.gameMillis = gameMillis;
+        }
+
+        /**
+         * @return - true iff all the recorded events were reproduced, with the recorded scores.
+         */
+        public boolean matched() {
+            return divergence == null && replayed == events && Arrays.equals(recordedScores, scores);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("replayed %d of %d events (%.1fs of game in %.3fs): %s", replayed, events,
+                    gameMillis / 1e3, realNanos / 1e9, matched() ? "verdicts and scores match"
+                            : divergence != null ? divergence
+                            : "scores " + Arrays.toString(scores) + " instead of " + Arrays.toString(recordedScores));
+        }
+    }
+
+    private final Logger logger;
+    private final long seed;
+    private final long startMillis;
+    private final Properties config;
+
+    /**
+     * The recorded events.
+     */
+    private final List<GameJournal.Event> events;
+
+    /**
+     * The time the dealer woke up for each recorded update of the countdown (by the countdown left) and for each
+     * wake-up followed by one, or the time of the event for the other events.
+     */
+    private final long[] wakes;
+
+    /**
+     * The next recorded event to be reproduced, and the first event the replayed game journaled differently (null if
+     * none). Accessed under the lock.
+     */
+    private int cursor;
+    private String divergence;
+
+    /**
+     * The recorded events reproduced so far (accessed under the lock). The player events the dealer got in one batch
+     * may be reproduced in another order, when a player's claim reached the dealer after the tokens of other players.
+     */
+    private boolean[] reproduced;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ReplayClock clock;
+    private Dealer dealer;
+    private Table table;
+    private Player[] players;
+    private Thread dealerThread;
+
+    /**
+     * The recorded event the dealer was last released for (used by the replaying thread only).
+     */
+    private int released;
+
+    /**
+     * @param journal - the journal file of the game.
+     */
+    public GameReplay(Logger logger, File journal) throws IOException {
+        this.logger = logger;
+        GameJournal.Reader reader = new GameJournal.Reader(journal);
+        this.seed = reader.seed();
+        this.startMillis = reader.startMillis();
+        this.config = reader.config();
+        this.events = new ArrayList<>();
+        for (GameJournal.Event event = reader.next(); event != null; event = reader.next())
+            events.add(event);
+        this.wakes = new long[events.size()];
+        long base = startMillis, left = 0; // the dealer's last reading of the clock, and the countdown left then
+        for (int i = 0; i < wakes.length; i++) {
+            GameJournal.Event event = events.get(i);
+            wakes[i] = event.millis;
+            if (event.type == GameJournal.COUNTDOWN_RESET) {
+                base = event.millis;
+                left = event.value(0);
+            }
+            else if (event.type == GameJournal.COUNTDOWN) {
+                base += left - event.value(0);
+                left = event.value(0);
+                wakes[i] = Math.min(base, event.millis);
+                if (i > 0 && events.get(i - 1).type == GameJournal.WAKE) // the wake-up read the clock for the countdown
+                    wakes[i - 1] = wakes[i];
+            }
+        }
+    }
+
+    /**
+     * Replays the game on the calling thread.
+     *
+     * @param speed - the pace of the game clock relative to real time (e.g. 1 for the original speed), or 0 for
+     *              replaying as fast as possible.
+     * @return - the outcome of the replay.
+     */
+    public Result run(double speed) throws InterruptedException {
+        Properties properties = (Properties) config.clone();
+        properties.setProperty("Journal", "False"); // the replayed game is journaled to the verifier only
+        properties.setProperty("DealerStallSeconds", "0"); // a held dealer isn't stalled
+        Config config = new Config(logger, properties);
+        clock = new ReplayClock();
+        clock.hold(); // the dealer wakes up when released only
+        Env env = new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config),
+                new GameThreadFactory(logger, config), new GameRandom(logger, seed), null, clock);
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players, new Verifier()); // the dealer's random stream is split first
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true); // pressed by the replay only
+
+        cursor = 0;
+        divergence = null;
+        reproduced = new boolean[events.size()];
+        long start = System.nanoTime();
+        released = -1;
+        dealerThread = env.threads.newThread(dealer, "dealer");
+        dealerThread.start();
+        long gameMillis;
+        try {
+            replay(speed);
+        } finally {
+            gameMillis = clock.currentTimeMillis() - startMillis;
+            finish();
+        }
+        long realNanos = System.nanoTime() - start;
+
+        int[] recordedScores = new int[players.length];
+        for (GameJournal.Event event : events)
+            if (event.type == GameJournal.SCORE && event.value(0) < players.length)
+                recordedScores[event.value(0)] = event.value(1);
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].getScore();
+        lock.lock();
+        try {
+            Result result = new Result(events.size(), cursor, divergence, recordedScores, scores, realNanos, gameMillis);
+            logger.log(result.matched() ? Level.INFO : Level.WARNING, result.toString());
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drives the replayed game until all the recorded events were reproduced, or one could not be.
+     */
+    private void replay(double speed) throws InterruptedException {
+        int injected = 0; // the recorded player events pressed so far
+        while (true) {
+            int next = next();
+            if (next < 0 || !settle(next)) return;
+            if (next() != next) continue; // journaled meanwhile
+            GameJournal.Event event = events.get(next);
+            int batch = next; // the player events the dealer got in the wake-up, journaled after updating the countdown
+            if (event.type == GameJournal.WAKE && ++batch < events.size()
+                    && events.get(batch).type == GameJournal.COUNTDOWN)
+                batch++;
+            if (clock.currentTimeMillis() < wakes[next])
+                advanceTo(Math.min(clock.nextDeadline(), wakes[next]), speed);
+            else if (batch < events.size() && isPlayerEvent(events.get(batch)) && injected <= batch) {
+                injected = press(batch);
+                if (injected < 0) return;
+            }
+            else if (released != next && clock.parked() > 0) { // the dealer woke up for the event when it was recorded
+                released = next;
+                clock.release();
+            }
+            else { // nothing journals the event yet, letting the time pass
+                long deadline = clock.nextDeadline();
+                if (deadline == Long.MAX_VALUE) {
+                    diverge(next, "the replayed game stalled");
+                    return;
+                }
+                advanceTo(deadline, speed);
+                released = -1;
+            }
+        }
+    }
+
+    /**
+     * @return - the index of the next recorded event to be reproduced, or -1 if the replay ended or diverged.
+     */
+    private int next() {
+        lock.lock();
+        try {
+            return divergence != null || cursor == events.size() ? -1 : cursor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all the game's threads wait for the time or for a key press, or the recorded event was journaled.
+     *
+     * @return - false if the replay stalled (and diverged).
+     */
+    private boolean settle(int next) throws InterruptedException {
+        return await(() -> next() != next || settled(), next, () -> "the replayed game stalled");
+    }
+
+    /**
+     * @return - true iff the dealer waits on the clock, and every player waits on the clock, for a key press or for the
+     * board to be ready (and started its freeze, if it was answered), or ended.
+     */
+    private boolean settled() {
+        if (!clock.waiting(dealerThread) || !answered()) return false;
+        for (Player player : players) {
+            Thread thread = player.playerThread;
+            if (thread == null || thread.isAlive() && !clock.waiting(thread) && dealer.boardReady
+                    && !player.actionsQueue.waiting())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return - true iff every player answered by the dealer started its freeze (it reads the clock then, the time
+     * must not pass before).
+     */
+    private boolean answered() {
+        for (Player player : players) {
+            Claim claim = player.lastClaim;
+            Thread thread = player.playerThread;
+            if (claim != null && claim.isDone() && !player.isAwake() && thread.isAlive() && !clock.waiting(thread))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Presses the tokens of the batch of player events starting at the given event (the player events the dealer got
+     * in one wake-up) while the dealer is held parked, then lets the dealer handle them.
+     *
+     * @return - the index of the event after the batch, or -1 if the batch could not be pressed.
+     */
+    private int press(int first) throws InterruptedException {
+        if (clock.parked() == 0) {
+            diverge(first, "the dealer was not waiting for player events");
+            return -1;
+        }
+        int end = first;
+        while (end < events.size() && isPlayerEvent(events.get(end)))
+            end++;
+        try {
+            long published = dealer.events.published();
+            for (int i = first; i < end; i++) {
+                GameJournal.Event event = events.get(i);
+                if (event.type == GameJournal.CLAIM) continue; // published by the player with its last token
+                if (event.value(2) < 0) {
+                    diverge(i, "the token was placed on an empty slot, which can't be replayed");
+                    return -1;
+                }
+                if (!await(() -> pressProblem(event) == null, i, () -> pressProblem(event))
+                        || !press(event) && !await(() -> pressed(event), i, () -> "the player ignored the press"))
+                    return -1;
+            }
+            long count = published + end - first; // the players publish in the order of their presses
+            if (!await(() -> dealer.events.isPublished(count), first, () -> "the player events were never published"))
+                return -1;
+        } finally {
+            clock.release();
+        }
+        return end;
+    }
+
+    /**
+     * Presses the slot of a recorded token event.
+     *
+     * @return - true iff the press was already performed by the player.
+     */
+    private boolean press(GameJournal.Event event) {
+        players[event.value(0)].keyPressed(event.value(1));
+        return pressed(event);
+    }
+
+    /**
+     * @return - true iff the player performed the press of a recorded token event.
+     */
+    private boolean pressed(GameJournal.Event event) {
+        Player player = players[event.value(0)];
+        return player.actionsQueue.isEmpty()
+                && player.getTokens().contains(event.value(1)) == (event.type == GameJournal.TOKEN_PLACED);
+    }
+
+    /**
+     * @return - why pressing the slot of a recorded token event wouldn't have the recorded effect now, or null if it
+     * would.
+     */
+    private String pressProblem(GameJournal.Event event) {
+        Player player = players[event.value(0)];
+        int slot = event.value(1);
+        Integer card = table.slotToCard[slot];
+        if (!dealer.boardReady) return "the board is not ready";
+        if (!player.isAwake() || !player.actionsQueue.isEmpty()) return "the player is busy";
+        if (card == null || card != event.value(2)) return "card " + card + " is on the slot";
+        List<Integer> tokens = player.getTokens();
+        if (tokens.contains(slot) != (event.type == GameJournal.TOKEN_REMOVED))
+            return "the player's tokens are on " + tokens;
+        return null;
+    }
+
+    /**
+     * Waits for a condition of the replayed game (without advancing the clock).
+     *
+     * @return - true iff the condition holds, false if the replay stalled (and diverged).
+     */
+    private boolean await(BooleanSupplier condition, int index, Supplier<String> stall) {
+        long start = System.nanoTime();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - start > STALL_NANOS) {
+                diverge(index, stall.get());
+                return false;
+            }
+            LockSupport.parkNanos(this, POLL_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Waits (a while at most) until every player answered by the dealer started its freeze, before the dealer moves the
+     * clock.
+     */
+    private void awaitAnswered() {
+        long start = System.nanoTime();
+        while (!answered() && System.nanoTime() - start < STALL_NANOS)
+            LockSupport.parkNanos(this, POLL_NANOS);
+    }
+
+    /**
+     * Advances the clock, waiting for the time to pass at the given speed (0 for not waiting).
+     */
+    private void advanceTo(long millis, double speed) throws InterruptedException {
+        long delta = millis - clock.currentTimeMillis();
+        if (delta <= 0) return;
+        if (speed > 0) Thread.sleep((long) (delta / speed));
+        clock.advanceTo(millis);
+    }
+
+    /**
+     * Ends the replayed game (unless it ended by itself) and waits for its threads to end.
+     */
+    private void finish() throws InterruptedException {
+        if (dealer.getWinners() == null) dealer.terminate();
+        while (dealerThread.isAlive()) {
+            clock.release();
+            dealerThread.join(1);
+            long deadline = clock.nextDeadline();
+            if (dealerThread.isAlive() && deadline != Long.MAX_VALUE) clock.advanceTo(deadline);
+        }
+    }
+
+    /**
+     * Records the first event that could not be reproduced.
+     */
+    private void diverge(int index, String reason) {
+        lock.lock();
+        try {
+            if (divergence == null)
+                divergence = "event " + index + (index < events.size() ? " (" + events.get(index) + " at "
+                        + (events.get(index).millis - startMillis) + "ms)" : "") + ": " + reason;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isPlayerEvent(GameJournal.Event event) {
+        return event.type == GameJournal.TOKEN_PLACED || event.type == GameJournal.TOKEN_REMOVED
+                || event.type == GameJournal.CLAIM;
+    }
+
+    /**
+     * The clock of the replayed game: when the dealer reads it for a recorded countdown update or reset, it first moves
+     * to the time the dealer read when the game was recorded (the countdown counts from the dealer's readings).
+     */
+    private final class ReplayClock extends VirtualClock {
+
+        ReplayClock() {
+            super(startMillis);
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            if (Thread.currentThread() == dealerThread) {
+                int next = next();
+                if (next >= 0 && (events.get(next).type == GameJournal.COUNTDOWN
+                        || events.get(next).type == GameJournal.COUNTDOWN_RESET) && wakes[next] > time()) {
+                    awaitAnswered(); // updated at the end of an iteration of the dealer, later than its last record
+                    advanceTo(wakes[next]);
+                }
+            }
+            return time();
+        }
+
+        /**
+         * @return - the current time (without moving the clock).
+         */
+        long time() {
+            return super.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The journal of the replayed game: compares every event the dealer journals with the next recorded event, and
+     * moves the clock to the recorded time of the event.
+     */
+    private final class Verifier extends GameJournal {
+
+        Verifier() {
+            super(clock, ByteBuffer.allocate(1 << 10), startMillis);
+        }
+
+        @Override
+        protected void recorded(ByteBuffer buffer, int start) {
+            ByteBuffer record = buffer.duplicate();
+            record.flip();
+            record.position(start);
+            Event event = GameJournal.read(record, 0);
+            buffer.clear(); // the events are not kept
+            long millis;
+            lock.lock();
+            try {
+                if (divergence != null || cursor == events.size()) return; // the replay ended
+                int index = cursor;
+                while (index < events.size() && isPlayerEvent(events.get(index))
+                        && (reproduced[index] || !events.get(index).sameAs(event)))
+                    index++; // looking for the event in the batch of player events
+                if (index == events.size() || !events.get(index).sameAs(event)) {
+                    diverge(cursor, "replayed " + event);
+                    return;
+                }
+                reproduced[index] = true;
+                while (cursor < events.size() && reproduced[cursor])
+                    cursor++;
+                millis = events.get(index).millis;
+            } finally {
+                lock.unlock();
+            }
+            if (millis <= clock.time()) return; // not moving to the next countdown before the dealer reads the clock for it
+            awaitAnswered();
+            clock.advanceTo(millis);
+        }
+
+    }
+}
@@ -1,10 +1,14 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.Metrics;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import static java.lang.Thread.currentThread;
 
@@ -39,12 +43,12 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;
+    volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    protected Thread aiThread;
+    protected volatile Thread aiThread;
 
     /**
      * True iff the player is human (not a computer player).
@@ -64,23 +68,52 @@ public class Player implements Runnable {
     /**
      * The queue of player next actions
      */
-    protected final BlockingQueue<Integer> actionsQueue;
+    protected final ActionQueue actionsQueue;
 
     /**
-     * Enum representing an answer from the dealer
+     * The last set claimed by the player (null if none).
      */
-    protected Verdict answer;
+    protected volatile Claim lastClaim;
 
     /**
      * True iff player isn't frozen
      */
-    private boolean playerIsAwake;
+    private volatile boolean playerIsAwake;
 
     /**
-     * List of current player tokens on Table
+     * The System.nanoTime() of the last progress of the player thread (an action taken or a claim answered).
+     */
+    private volatile long progressNanos;
+
+    /**
+     * Lock and condition used by the AI thread to wait while the board isn't ready or the player is frozen
+     */
+    private final ReentrantLock aiLock;
+    private final Condition aiWakeup;
+
+    /**
+     * The random stream used by the AI thread for generating key presses.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * List of current player tokens on Table, changed by the player thread only (the dealer invalidates the slots of
+     * removed cards in the actions queue, and the player thread drops its tokens on them)
      */
     protected final List<Integer> tokens;
 
+    /**
+     * The epoch of the actions queue when a token was placed on each slot (written by the player thread only)
+     */
+    private final int[] tokenEpochs;
+
+    /**
+     * Metrics: the time spent frozen, the latency of the answered claims and the key presses dropped for a full queue.
+     */
+    private final LatencyHistogram freezeNanos;
+    private final LatencyHistogram claimNanos;
+    private final Metrics.Counter droppedActions;
+
     /**
      * Emum used for representing an answer from dealer
      */
@@ -107,10 +140,17 @@ public class Player implements Runnable {
         this.dealer = dealer;
         this.score = 0;
 
-        this.actionsQueue = new LinkedBlockingQueue<>(env.config.featureSize);
-        this.answer = Verdict.IRRELEVANT;
+        this.actionsQueue = new ActionQueue(env.config.featureSize, env.config.maxTableSize);
         this.playerIsAwake = true;
-        this.tokens = new ArrayList<>();
+        this.progressNanos = System.nanoTime();
+        this.tokens = new CopyOnWriteArrayList<>(); // read by the dealer's watchdog and the AI thread
+        this.tokenEpochs = new int[env.config.maxTableSize];
+        this.random = env.random.split();
+        this.aiLock = new ReentrantLock();
+        this.aiWakeup = aiLock.newCondition();
+        this.freezeNanos = env.metrics.histogram(Metrics.player(id), "freezeNanos");
+        this.claimNanos = env.metrics.histogram(Metrics.player(id), "claimNanos");
+        this.droppedActions = env.metrics.counter(Metrics.player(id), "droppedActions");
     }
 
     /**
@@ -134,21 +174,24 @@ public class Player implements Runnable {
      * key presses. If the queue of key presses is full, the thread waits until it is not full.
      */
     private void createArtificialIntelligence() {
-        aiThread = new Thread(() -> {
+        aiThread = env.threads.newThread(() -> {
             env.logger.log(Level.INFO, "Thread " + currentThread().getName() + " starting.");
             int keyCode = 0;
 
             while(!terminate){
                 if(playerIsAwake && dealer.boardReady) { // checking that key press is relevant at the moment
-                    keyCode = (int) Math.floor(Math.random() * (env.config.tableSize)); // generating random between 0 to tableSize
-                    keyPressed(keyCode); // takes actionQueue key
+                    keyCode = nextKey();
+                    if (keyCode >= 0) keyPressed(keyCode); // takes actionQueue key
                 }
                 else{
-                    synchronized (aiThread){
-                        try {
-                            aiThread.wait(); // waiting if board isn't ready or player is frozen
-                        } catch (InterruptedException terminate){
-                            Thread.currentThread().interrupt();}
+                    aiLock.lock();
+                    try {
+                        while (!terminate && !(playerIsAwake && dealer.boardReady))
+                            aiWakeup.await(); // waiting if board isn't ready or player is frozen
+                    } catch (InterruptedException terminate){
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        aiLock.unlock();
                     }
                 }
             }
@@ -157,13 +200,32 @@ public class Player implements Runnable {
         aiThread.start();
     }
 
+    /**
+     * Generates the next key press of the AI thread.
+     *
+     * @return - the slot of the key to press, or -1 for no key press at the moment.
+     */
+    protected int nextKey() {
+        return random.nextInt(env.config.maxTableSize); // generating random between 0 to tableSize (and extra slots)
+    }
+
+    /**
+     * Called by the player thread when the dealer answered a claim of the player, before the player is frozen.
+     *
+     * @param verdict      - the dealer's answer.
+     * @param latencyNanos - the time from placing the last token of the claim to receiving the answer.
+     */
+    protected void claimAnswered(Verdict verdict, long latencyNanos) {
+    }
+
     /**
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
         terminate = true;
-        if(!human) // interrupting the aiThread if non-human thread.
-            aiThread.interrupt();
+        Thread ai = aiThread;
+        if(ai != null) // interrupting the aiThread if non-human thread (and it was already created).
+            ai.interrupt();
         if(playerThread != null)
             playerThread.interrupt(); // interrupting playerThread
     }
@@ -174,7 +236,8 @@ public class Player implements Runnable {
      */
     public void keyPressed(int slot) {//insert "remove token" or "adding token" action to the actionQueue
         if(playerIsAwake && dealer.boardReady && table.slotToCard[slot] != null)  { //check if there is a card on the slot or the queue is full
-            actionsQueue.offer(slot); // adding slot into the blocking queue
+            if (!actionsQueue.offer(slot)) // adding slot into the actions queue (ignored if full)
+                droppedActions.increment();
         }
     }
 
@@ -183,24 +246,33 @@ public class Player implements Runnable {
      */
     private void performAction(){
         if(dealer.boardReady) { // checking if the board is ready
-            Integer currentAction = 0;
+            Integer currentAction;
             try {
-                currentAction = actionsQueue.take(); //if the blocking queue is empty, wait for an element
+                currentAction = actionsQueue.take(); //if the actions queue is empty, wait for an element
             }catch (InterruptedException terminate){
                 Thread.currentThread().interrupt();
+                return;
             }
+            progressNanos = System.nanoTime();
+            if(!dealer.boardReady) return; // taken while the dealer reshuffles (the tokens are about to be cleared)
+            tokens.removeIf(slot -> !actionsQueue.isValid(slot, tokenEpochs[slot])); // the cards were removed
             if(tokens.contains(currentAction)){ //case of removal from tokens list
                 table.removeToken(id, currentAction);
                 tokens.remove(currentAction);
+                dealer.events.publishToken(id, currentAction, false);
             }
-            else{ // case of addition into tokens list
+            else if(table.slotToCard[currentAction] != null){ // case of addition into tokens list (on a card only)
                 if(tokens.size() < env.config.featureSize){ //case of addition from tokens list
+                    long stamp = System.nanoTime(); // the time the set was completed, used for arbitrating claims
+                    tokenEpochs[currentAction] = actionsQueue.epoch(); // read before placing, a later removal drops it
                     table.placeToken(id, currentAction);
                     tokens.add(currentAction);
                     if(tokens.size() == env.config.featureSize){ // calling for Set
                         playerIsAwake = false;
-                        callSet();
+                        callSet(currentAction, stamp);
                     }
+                    else
+                        dealer.events.publishToken(id, currentAction, true);
                 }
             }
         }
@@ -208,53 +280,89 @@ public class Player implements Runnable {
 
     /**
      * This method is used for calling a set after placing three tokens
+     *
+     * @param slot      - the slot of the last token, published with the claim.
+     * @param submitted - the System.nanoTime() at which the last token was placed.
      */
-    private void callSet() {
-        synchronized(this) {
-            try {
-                dealer.setClaimers.put(id); // pushing player id into blocking queue
-                dealer.dealerThread.interrupt();
-                this.wait(); // waiting for dealer answer
-            } catch (InterruptedException terminate) {
-                Thread.currentThread().interrupt();
+    private void callSet(int slot, long submitted) {
+        int[] slots = new int[tokens.size()];
+        int[] cards = new int[slots.length];
+        int epoch = table.epoch(); // sampled before the cards, so a concurrent change is detected by the dealer
+        for (int i = 0; i < slots.length; i++) { // snapshot of the claimed slots and their cards
+            slots[i] = tokens.get(i);
+            Integer card = table.slotToCard[slots[i]];
+            cards[i] = card == null ? -1 : card;
+        }
+        Claim claim = new Claim(id, slots, cards, epoch, submitted);
+        lastClaim = claim;
+
+        Verdict verdict = Verdict.IRRELEVANT;
+        try {
+            if (dealer.events.publishSet(slot, claim) >= 0) { // publishing the last token and the claim (wakes him up)
+                verdict = claim.awaitVerdict(); // waiting for dealer answer (returns at once if already answered)
+                long latency = System.nanoTime() - submitted;
+                claimNanos.record(latency);
+                claimAnswered(verdict, latency);
             }
+        } catch (InterruptedException terminate) {
+            Thread.currentThread().interrupt();
         }
-        if (answer==Verdict.POINT) // dealer answer for set was positive
-            freeze(env.config.pointFreezeMillis); // point freeze
+        if (verdict==Verdict.POINT) // dealer answer for set was positive
+            freeze(env.config.pointFreezeMillis, verdict); // point freeze
 
-        else if(answer==Verdict.PENALTY){ // dealer answer for set was negative
-            freeze(env.config.penaltyFreezeMillis); // penalty freeze
+        else if(verdict==Verdict.PENALTY){ // dealer answer for set was negative
+            freeze(env.config.penaltyFreezeMillis, verdict); // penalty freeze
         }
         playerIsAwake = true; // allowing the player to make actions
+        progressNanos = System.nanoTime();
+        wakeArtificialIntelligence();
+    }
 
-        if(!human) { // waking up the aiThread using notifyAll
-            synchronized (aiThread) {
-                aiThread.notifyAll();
-            }
+    /**
+     * Wakes up the AI thread (if any) so it rechecks whether key presses are relevant again.
+     */
+    void wakeArtificialIntelligence() {
+        if (human) return;
+        aiLock.lock();
+        try {
+            aiWakeup.signalAll();
+        } finally {
+            aiLock.unlock();
         }
     }
 
     /**
      * This method is used for freezing a player according to dealers answer.
      * Player will be stuck inside this function until timer runs out
+     *
+     * @param verdict - the verdict of the claim the player is frozen for.
      */
-    public void freeze(long timer){ //manage the freeze process (timer and display)
+    public void freeze(long timer, Verdict verdict){ //manage the freeze process (timer and display)
         env.ui.setFreeze(id,timer); // setting freeze in UI
-        long timestamp = System.currentTimeMillis();
-        while(timer>0){
-            long temp = System.currentTimeMillis() - timestamp;
-            if(temp >= env.config.pointFreezeMillis){
-                timer -= temp;
-                env.ui.setFreeze(id,timer); // updating freeze value in UI
-                timestamp = System.currentTimeMillis();
+        long requested = timer;
+        long timestamp = env.clock.currentTimeMillis();
+        long start = timestamp;
+        while(timer>0 && !terminate){
+            try { // sleeping rather than spinning, so a frozen player doesn't occupy a CPU (or a virtual thread carrier)
+                env.clock.sleep(env.config.pointFreezeMillis > 0 ? Math.min(timer, env.config.pointFreezeMillis) : timer);
+            } catch (InterruptedException terminate) {
+                Thread.currentThread().interrupt();
+                break;
             }
+            long temp = env.clock.currentTimeMillis() - timestamp;
+            timer -= temp;
+            if(timer > 0)
+                env.ui.setFreeze(id,timer); // updating freeze value in UI
+            timestamp = env.clock.currentTimeMillis();
         }
+        long frozen = env.clock.currentTimeMillis() - start; // on the game clock
+        freezeNanos.record(frozen * 1_000_000);
+        GameEvents.freeze(id, verdict, requested, frozen);
         env.ui.setFreeze(id,0); // reset the freeze in UI
-        answer = Verdict.IRRELEVANT; // reset the boolean
     }
 
     /**
-     * Giving point to a player using Verdict enum
+     * Giving point to a player (the verdict itself is handed to the player through its claim)
      *
      * @post - the player's score is increased by 1.
      * @post - the player's score is updated in the ui.
@@ -262,36 +370,37 @@ public class Player implements Runnable {
     public void point() { //dealer calls that function
         score++; // adding 1 to score field
         env.ui.setScore(id, score); // updating the score on UI
-        answer = Verdict.POINT; // changing the dealer answer - function being called by dealer
     }
 
     /**
-     * Penalize a player using Verdict enum
+     * Get function for player's score
      */
-    public void penalty() { //dealer calls that function
-        answer = Verdict.PENALTY;
+    public int getScore() {
+        return score;
     }
 
     /**
-     * Marks that the set was irrelevant due to cards removal.
-     * function being called by dealer.
+     * Get function for player's tokens list (without the tokens on removed cards the player thread didn't drop yet)
      */
-    public void irrelevant(){ // marks that the set was irrelevant due to cards removal. dealer calls that function.
-        answer = Verdict.IRRELEVANT;
+    public List<Integer> getTokens(){
+        List<Integer> valid = new ArrayList<>(tokens.size());
+        for (Integer slot : tokens)
+            if (actionsQueue.isValid(slot, tokenEpochs[slot])) valid.add(slot);
+        return valid;
     }
 
     /**
-     * Get function for player's score
+     * @return - true iff the player isn't frozen (nor waiting for the verdict of a claim).
      */
-    public int getScore() {
-        return score;
+    boolean isAwake() {
+        return playerIsAwake;
     }
 
     /**
-     * Get function for player's tokens list
+     * @return - the nanoseconds since the last progress of the player thread.
      */
-    public List<Integer> getTokens(){
-        return tokens;
+    long progressAgeNanos() {
+        return System.nanoTime() - progressNanos;
     }
 
 }
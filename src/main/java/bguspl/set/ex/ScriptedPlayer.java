@@ -0,0 +1,158 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A computer player making claims as fast as it can, for measuring the claim path under load.
+ * Instead of pressing random keys, the player picks a whole claim at a time (a set on the table with a given
+ * probability, random cards otherwise), removes the tokens not in the claim and places the missing ones. It records the
+ * latency of every answered claim, from placing its last token to receiving the dealer's answer.
+ */
+public class ScriptedPlayer extends Player {
+
+    /**
+     * The number of attempts to find a set on the table, by completing random cards of the table.
+     */
+    private static final int SET_ATTEMPTS = 256;
+
+    /**
+     * The number of consecutive idle key requests before planning the next claim, letting the last press be performed.
+     */
+    private static final int IDLE_REQUESTS = 2;
+
+    private final Env env;
+    private final Table table;
+
+    /**
+     * The probability of claiming a set on the table (rather than random cards).
+     */
+    private final double legalFraction;
+
+    private final SplittableRandom random;
+
+    /**
+     * The key presses of the current claim and the number pressed (used by the AI thread only).
+     */
+    private int[] plan = new int[0];
+    private int pressed;
+    private int idle;
+
+    /**
+     * The latencies of the answered claims, in nanoseconds (written by the player thread only).
+     */
+    private long[] latencies = new long[1024];
+    private int answered;
+
+    /**
+     * The number of claims answered with each verdict.
+     */
+    private final int[] verdicts = new int[Verdict.values().length];
+
+    /**
+     * @param legalFraction - the probability of claiming a set on the table (rather than random cards).
+     */
+    public ScriptedPlayer(Env env, Dealer dealer, Table table, int id, double legalFraction) {
+        super(env, dealer, table, id, false);
+        this.env = env;
+        this.table = table;
+        this.legalFraction = legalFraction;
+        this.random = env.random.split();
+    }
+
+    @Override
+    protected int nextKey() {
+        if (pressed < plan.length) {
+            if (actionsQueue.size() >= env.config.featureSize) return -1; // waiting for the player to take the presses
+            return plan[pressed++];
+        }
+        if (!actionsQueue.isEmpty() || ++idle < IDLE_REQUESTS) { // the last presses may still be performed
+            Thread.yield();
+            return -1;
+        }
+        idle = 0;
+        plan = plan(claim());
+        pressed = 0;
+        return -1;
+    }
+
+    /**
+     * @return - the key presses turning the player's tokens into the given claim.
+     */
+    int[] plan(int[] claim) {
+        Object[] held = getTokens().toArray(); // may be dropped by the player thread meanwhile, the next plan corrects it
+        int[] plan = new int[held.length + claim.length];
+        int n = 0;
+        for (Object token : held)
+            if (token != null && !contains(claim, (Integer) token)) plan[n++] = (Integer) token;
+        for (int slot : claim)
+            if (!Arrays.asList(held).contains(slot)) plan[n++] = slot;
+        return Arrays.copyOf(plan, n);
+    }
+
+    /**
+     * @return - the slots of the next claim (empty if there are too few cards on the table).
+     */
+    int[] claim() {
+        int[] slots = new int[table.slotToCard.length];
+        int count = 0;
+        for (int slot = 0; slot < slots.length; slot++)
+            if (table.slotToCard[slot] != null) slots[count++] = slot;
+        int size = env.config.featureSize;
+        if (count < size) return new int[0];
+
+        boolean legal = random.nextDouble() < legalFraction;
+        int[] cards = new int[size - 1];
+        for (int attempt = 0; attempt < (legal ? SET_ATTEMPTS : 1); attempt++) {
+            for (int i = 0; i < size; i++) { // a partial shuffle picks random slots
+                int j = i + random.nextInt(count - i);
+                int slot = slots[j];
+                slots[j] = slots[i];
+                slots[i] = slot;
+            }
+            if (!legal) break;
+            boolean complete = true;
+            for (int i = 0; i < size - 1 && complete; i++) {
+                Integer card = table.slotToCard[slots[i]];
+                complete = card != null;
+                if (complete) cards[i] = card;
+            }
+            int completion = complete ? env.universe.complete(cards, size - 1) : -1;
+            Integer slot = completion < 0 ? null : table.cardToSlot[completion];
+            if (slot != null) {
+                slots[size - 1] = slot;
+                break;
+            }
+        }
+        return Arrays.copyOf(slots, size);
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+
+    @Override
+    protected void claimAnswered(Verdict verdict, long latencyNanos) {
+        if (answered == latencies.length) latencies = Arrays.copyOf(latencies, 2 * answered);
+        latencies[answered++] = latencyNanos;
+        verdicts[verdict.ordinal()]++;
+    }
+
+    /**
+     * @return - the latencies of the answered claims, in nanoseconds (after the player thread ended).
+     */
+    public long[] getLatencies() {
+        return Arrays.copyOf(latencies, answered);
+    }
+
+    /**
+     * @return - the number of claims answered with a point, a penalty and as irrelevant (after the player thread ended).
+     */
+    public int[] getVerdicts() {
+        return verdicts.clone();
+    }
+}
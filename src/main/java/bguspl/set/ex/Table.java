@@ -1,8 +1,11 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.Metrics;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +30,16 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
+    /**
+     * Counter of card placements and removals, used for detecting claims made on a table that has changed since.
+     */
+    private final AtomicInteger epoch;
+
+    /**
+     * The time taken by card placements, removals and moves (including the table delay).
+     */
+    private final LatencyHistogram mutationNanos;
+
     /**
      * Constructor for testing.
      *
@@ -38,6 +51,8 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        this.epoch = new AtomicInteger();
+        this.mutationNanos = env.metrics.histogram(Metrics.TABLE, "mutationNanos");
     }
 
     /**
@@ -46,7 +61,7 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, new Integer[env.config.maxTableSize], new Integer[env.config.deckSize]);
     }
 
     /**
@@ -70,8 +85,9 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard ( int slot){
+        long start = System.nanoTime();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
         if (slotToCard[slot] != null) {
             env.ui.removeTokens(slot);
@@ -79,7 +95,33 @@ public class Table {
             int card = slotToCard[slot];
             slotToCard[slot] = null;
             cardToSlot[card] = null;
+            epoch.incrementAndGet();
+        }
+        mutationNanos.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Moves a card from one slot to another empty slot (removing the tokens on it).
+     *
+     * @param from - the slot the card is on.
+     * @param to   - the empty slot to move the card to.
+     */
+    public void moveCard(int from, int to) {
+        long start = System.nanoTime();
+        try {
+            env.clock.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {}
+        if (slotToCard[from] != null && slotToCard[to] == null) {
+            int card = slotToCard[from];
+            env.ui.removeTokens(from);
+            env.ui.removeCard(from);
+            slotToCard[from] = null;
+            slotToCard[to] = card;
+            cardToSlot[card] = to;
+            epoch.incrementAndGet();
+            env.ui.placeCard(card, to);
         }
+        mutationNanos.record(System.nanoTime() - start);
     }
 
     /**
@@ -122,12 +164,22 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
+        long start = System.nanoTime();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
+        epoch.incrementAndGet();
         env.ui.placeCard(card, slot);
+        mutationNanos.record(System.nanoTime() - start);
+    }
+
+    /**
+     * @return - the number of card placements and removals done so far.
+     */
+    public int epoch() {
+        return epoch.get();
     }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches a game for stalls: a dealer thread showing no sign of life (no iteration of the dealer loop and no deal), or
+ * a player waiting for the verdict of a claim, for longer than the configured DealerStallSeconds.
+ * When a stall starts, a thread dump (with the locks and their owners) and a snapshot of the game are written to a
+ * file in the logs directory, so the stall can be diagnosed after the fact. The checks of all the games of the JVM
+ * run on a single daemon thread, and read the game state without locking (a snapshot may be slightly inconsistent).
+ */
+class Watchdog {
+
+    /**
+     * The thread checking all the watched games (created with the first watchdog started).
+     */
+    private static ScheduledExecutorService scheduler;
+
+    private final Env env;
+    private final Dealer dealer;
+    private final Table table;
+    private final Player[] players;
+
+    /**
+     * The directory of the stall dumps.
+     */
+    private final File directory;
+
+    /**
+     * The time without progress after which the game is considered stalled (0 to disable the watchdog).
+     */
+    private final long stallNanos;
+
+    /**
+     * Counts the stalls of the game.
+     */
+    private final Metrics.Counter stalls;
+
+    /**
+     * The periodic check (null while the watchdog is stopped).
+     */
+    private ScheduledFuture<?> task;
+
+    /**
+     * True iff the game was stalled at the last check (accessed by the checking thread only), so a stall is dumped
+     * once, when it starts.
+     */
+    private boolean stalled;
+
+    Watchdog(Env env, Dealer dealer, Table table, Player[] players, File directory) {
+        this.env = env;
+        this.dealer = dealer;
+        this.table = table;
+        this.players = players;
+        this.directory = directory;
+        this.stallNanos = env.config.dealerStallMillis * 1_000_000;
+        this.stalls = env.metrics.counter(Metrics.DEALER, "stalls");
+    }
+
+    private static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Starts checking the game periodically (4 times per stall threshold, between 10 times a second and once a second).
+     */
+    synchronized void start() {
+        if (stallNanos <= 0 || task != null) return;
+        long period = Math.max(100_000_000L, Math.min(1_000_000_000L, stallNanos / 4));
+        task = scheduler().scheduleAtFixedRate(this::inspect, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops checking the game.
+     */
+    synchronized void stop() {
+        if (task != null) task.cancel(false);
+        task = null;
+    }
+
+    /**
+     * Checks the game, and dumps the threads and the game if a stall started.
+     */
+    void inspect() {
+        try {
+            String stall = check();
+            if (stall != null && !stalled) {
+                stalls.increment();
+                File file = dump(stall);
+                env.logger.log(Level.SEVERE, "stall of " + env.metrics.game() + ": " + stall + ", dumped to " + file);
+            }
+            else if (stall == null && stalled)
+                env.logger.log(Level.WARNING, "stall of " + env.metrics.game() + " ended");
+            stalled = stall != null;
+        } catch (IOException | RuntimeException e) { // the watchdog must not die with a failed check
+            env.logger.log(Level.WARNING, "watchdog check of " + env.metrics.game() + " failed", e);
+        }
+    }
+
+    /**
+     * @return - a description of the stall of the game, or null if the game isn't stalled.
+     */
+    String check() {
+        StringBuilder stall = new StringBuilder();
+        long heartbeat = dealer.heartbeatAgeNanos();
+        if (heartbeat > stallNanos)
+            stall.append(String.format("no sign of life from the dealer for %.1fs", heartbeat / 1e9));
+        long now = System.nanoTime();
+        for (Player player : players) {
+            Claim claim = player.lastClaim;
+            if (claim != null && !claim.isDone() && now - claim.submittedNanos > stallNanos)
+                stall.append(stall.length() == 0 ? "" : ", ").append(String.format("player %d waiting for a verdict for %.1fs",
+                        player.id, (now - claim.submittedNanos) / 1e9));
+        }
+        return stall.length() == 0 ? null : stall.toString();
+    }
+
+    /**
+     * Writes the stall, a snapshot of the game and a dump of all the threads to a new file in the dumps directory.
+     *
+     * @return - the file written.
+     */
+    File dump(String stall) throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        Date now = new Date();
+        File file = new File(directory, "stall-" + env.metrics.game() + "-"
+                + new SimpleDateFormat("M-d_HH-mm-ss.SSS").format(now) + ".txt");
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            out.println("stall of " + env.metrics.game() + " at " + now + ": " + stall);
+            out.println();
+            out.print(snapshot());
+            out.println();
+            out.print(threadDump());
+        }
+        return file;
+    }
+
+    /**
+     * @return - a compact description of the state of the game (read racily).
+     */
+    String snapshot() {
+        StringBuilder out = new StringBuilder();
+        long now = System.nanoTime();
+        out.append(String.format("dealer: %s, heartbeat %.3fs ago, board %s, countdown %dms, deck %d cards, %d claims queued%n",
+                state(dealer.dealerThread), dealer.heartbeatAgeNanos() / 1e9, dealer.boardReady ? "ready" : "not ready",
+                dealer.countdownMillis(), dealer.deckSize(), dealer.setClaimers.size()));
+        out.append("table: epoch ").append(table.epoch()).append(", cards ");
+        out.append(Arrays.toString(table.slotToCard.clone())).append(String.format("%n"));
+        for (Player player : players) {
+            Claim claim = player.lastClaim;
+            out.append(String.format("player %d: %s, score %d, %s, tokens %s, %d actions queued, progress %.3fs ago",
+                    player.id, state(player.id < dealer.playerThreads.length ? dealer.playerThreads[player.id] : null),
+                    player.getScore(), player.isAwake() ? "awake" : "frozen", player.getTokens(),
+                    player.actionsQueue.size(), player.progressAgeNanos() / 1e9));
+            if (claim != null && !claim.isDone())
+                out.append(String.format(", claim of slots %s pending for %.3fs", Arrays.toString(claim.slots),
+                        (now - claim.submittedNanos) / 1e9));
+            out.append(String.format("%n"));
+        }
+        return out.toString();
+    }
+
+    private static String state(Thread thread) {
+        return thread == null ? "not started" : "thread \"" + thread.getName() + "\" " + thread.getState();
+    }
+
+    /**
+     * @return - the stacks of all the threads of the JVM, with the locks they wait for (and their owners) and hold,
+     * followed by the deadlocked threads.
+     */
+    static String threadDump() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos = threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(),
+                threads.isSynchronizerUsageSupported());
+        StringBuilder out = new StringBuilder();
+        for (ThreadInfo info : infos) {
+            out.append('"').append(info.getThreadName()).append("\" #").append(info.getThreadId()).append(' ')
+                    .append(info.getThreadState());
+            if (info.getLockName() != null) out.append(" on ").append(info.getLockName());
+            if (info.getLockOwnerName() != null)
+                out.append(" owned by \"").append(info.getLockOwnerName()).append("\" #").append(info.getLockOwnerId());
+            if (info.isInNative()) out.append(" (in native)");
+            out.append(String.format("%n"));
+            StackTraceElement[] stack = info.getStackTrace();
+            for (int depth = 0; depth < stack.length; depth++) {
+                out.append("    at ").append(stack[depth]).append(String.format("%n"));
+                for (MonitorInfo monitor : info.getLockedMonitors())
+                    if (monitor.getLockedStackDepth() == depth)
+                        out.append("    - locked ").append(monitor).append(String.format("%n"));
+            }
+            LockInfo[] synchronizers = info.getLockedSynchronizers();
+            if (synchronizers.length > 0)
+                out.append("    locked synchronizers: ").append(Arrays.toString(synchronizers)).append(String.format("%n"));
+            out.append(String.format("%n"));
+        }
+        long[] deadlocked = threads.isSynchronizerUsageSupported() ? threads.findDeadlockedThreads()
+                : threads.findMonitorDeadlockedThreads();
+        out.append("deadlocked threads: ").append(deadlocked == null ? "none" : Arrays.toString(deadlocked))
+                .append(String.format("%n"));
+        return out.toString();
+    }
+}
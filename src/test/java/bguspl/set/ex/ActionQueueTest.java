@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActionQueueTest {
+
+    private ActionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ActionQueue(3, 12);
+    }
+
+    @Test
+    void offerAndTake_KeepsOrder() throws InterruptedException {
+        assertTrue(queue.offer(4));
+        assertTrue(queue.offer(7));
+        assertEquals(2, queue.size());
+
+        assertEquals(4, queue.take());
+        assertEquals(7, queue.take());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void offer_QueueIsFull() {
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+
+        // the capacity is 3 even though the ring itself is larger
+        assertFalse(queue.offer(4));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void invalidate_SkipsOnlyInvalidatedSlots() throws InterruptedException {
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+
+        queue.invalidate(new int[]{2});
+        assertEquals(2, queue.size());
+
+        // actions offered after the invalidation are valid again
+        assertEquals(1, queue.take());
+        queue.offer(2);
+        assertEquals(3, queue.take());
+        assertEquals(2, queue.take());
+    }
+
+    @Test
+    void clear_SkipsAllPendingActions() throws InterruptedException {
+        queue.offer(1);
+        queue.offer(2);
+
+        queue.clear();
+        assertEquals(0, queue.size());
+
+        queue.offer(5);
+        assertEquals(5, queue.take());
+    }
+
+    @Test
+    void offer_InvalidatedActionsDontCount() throws InterruptedException {
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        queue.clear();
+
+        // the cleared actions are skipped by the producer, before the consumer takes anything
+        assertTrue(queue.offer(4));
+        assertTrue(queue.offer(5));
+        assertTrue(queue.offer(6));
+        assertFalse(queue.offer(7));
+
+        queue.invalidate(new int[]{5});
+        assertTrue(queue.offer(8));
+        assertEquals(3, queue.size());
+        assertEquals(4, queue.take());
+        assertEquals(6, queue.take());
+        assertEquals(8, queue.take());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void take_WaitsForProducer()throws InterruptedException {
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {}
+            queue.offer(9);
+        });
+        producer.start();
+
+        assertEquals(9, queue.take());
+        producer.join();
+    }
+
+    @Test
+    void take_Interrupted() {
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> queue.take());
+    }
+
+    @Test
+    void take_InterruptedWithPendingAction() throws InterruptedException {
+        queue.offer(4);
+        Thread.currentThread().interrupt();
+
+        // like a blocking queue, an interrupted consumer stops rather than handling one more action
+        assertThrows(InterruptedException.class, () -> queue.take());
+        assertEquals(1, queue.size());
+        assertEquals(4, queue.take());
+    }
+}
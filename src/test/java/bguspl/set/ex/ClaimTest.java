@@ -0,0 +1,74 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimTest {
+
+    private Claim claim;
+
+    @BeforeEach
+    void setUp() {
+        claim = new Claim(0, new int[]{0, 1, 2}, new int[]{5, 6, 7}, 0, System.nanoTime());
+    }
+
+    @Test
+    void complete_BeforeAwait() throws InterruptedException {
+        assertFalse(claim.isDone());
+        assertTrue(claim.complete(Player.Verdict.POINT));
+
+        // a verdict given before the player waits is not lost
+        assertEquals(Player.Verdict.POINT, claim.awaitVerdict());
+        assertTrue(claim.latencyNanos() >= 0);
+    }
+
+    @Test
+    void complete_OnlyOnce() throws InterruptedException {
+        assertTrue(claim.complete(Player.Verdict.IRRELEVANT));
+        assertFalse(claim.complete(Player.Verdict.PENALTY));
+
+        assertEquals(Player.Verdict.IRRELEVANT, claim.getVerdict());
+        assertEquals(Player.Verdict.IRRELEVANT, claim.awaitVerdict());
+    }
+
+    @Test
+    void isCurrent_RejectsEmptySlot() {
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        Table table = new Table(new Env(logger, config, new TableTest.MockUserInterface(), new TableTest.MockUtil()),
+                new Integer[config.tableSize], new Integer[config.deckSize]);
+        table.placeCard(5, 0);
+        table.placeCard(6, 1);
+        table.placeCard(7, 2);
+
+        assertTrue(new Claim(0, new int[]{0, 1, 2}, new int[]{5, 6, 7}, table.epoch(), System.nanoTime())
+                .isCurrent(table));
+        // the table didn't change since the claim, but a token was on an empty slot
+        assertFalse(new Claim(0, new int[]{0, 1, 3}, new int[]{5, 6, -1}, table.epoch(), System.nanoTime())
+                .isCurrent(table));
+    }
+
+    @Test
+    void awaitVerdict_WaitsForDealer() throws InterruptedException {
+        Thread dealer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {}
+            claim.complete(Player.Verdict.PENALTY);
+        });
+        dealer.start();
+
+        assertEquals(Player.Verdict.PENALTY, claim.awaitVerdict());
+        dealer.join();
+    }
+}
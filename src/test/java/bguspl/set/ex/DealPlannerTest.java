@@ -0,0 +1,133 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.SetCounter;
+import bguspl.set.SetUniverse;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DealPlannerTest {
+
+    private SetUniverse universe;
+    private UtilImpl util;
+    private DealPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        Config config = new Config(new TableTest.MockLogger(), properties);
+        universe = SetUniverse.of(config);
+        util = new UtilImpl(config);
+        planner = new DealPlanner(universe);
+    }
+
+    private List<Integer> shuffledDeck(long seed) {
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < universe.deckSize(); card++)
+            deck.add(card);
+        Collections.shuffle(deck, new Random(seed));
+        return deck;
+    }
+
+    private int[] toArray(List<Integer> cards) {
+        return cards.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void countSets_MatchesFindSets() {
+        for (long seed = 0; seed < 50; seed++) {
+            List<Integer> board = shuffledDeck(seed).subList(0, 12);
+            int expected = util.findSets(board, Integer.MAX_VALUE).size();
+            assertEquals(expected, universe.countSets(toArray(board), board.size(), Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void plan_TableWithoutSetGetsSet() {
+        for (long seed = 0; seed < 100; seed++) {
+            // building a table of 9 cards without a set
+            List<Integer> deck = shuffledDeck(seed);
+            List<Integer> table = new ArrayList<>();
+            for (int i = 0; i < deck.size() && table.size() < 9; i++) {
+                table.add(deck.get(i));
+                if (universe.hasSet(toArray(table), table.size())) table.remove(table.size() - 1);
+            }
+            deck.removeAll(table);
+
+            int[] cards = planner.plan(table, deck, 3, new SplittableRandom(seed));
+
+            assertEquals(3, cards.length);
+            HashSet<Integer> distinct = new HashSet<>();
+            for (int card : cards) {
+                assertTrue(deck.contains(card));
+                assertTrue(distinct.add(card));
+            }
+            List<Integer> dealt = new ArrayList<>(table);
+            for (int card : cards)
+                dealt.add(card);
+            assertTrue(universe.hasSet(toArray(dealt), dealt.size()));
+        }
+    }
+
+    @Test
+    void plan_NoSetInDeck() {
+        // a table that cannot be completed to a set by the deck
+        List<Integer> table = new ArrayList<>();
+        table.add(0);
+        table.add(1);
+        List<Integer> deck = new ArrayList<>();
+        deck.add(3);
+
+        // the completion of 0 and 1 is 2, which isn't in the deck, so the random card is dealt
+        int[] cards = planner.plan(table, deck, 1, new SplittableRandom(0));
+        assertArrayEquals(new int[]{3}, cards);
+    }
+
+    @Test
+    void setCounter_MatchesCountSets() {
+        SetCounter counter = new SetCounter(universe);
+        List<Integer> deck = shuffledDeck(7);
+        List<Integer> board = new ArrayList<>();
+        Random random = new Random(7);
+        for (int step = 0; step < 200; step++) {
+            if (board.size() < 3 || (board.size() < 15 && random.nextBoolean())) {
+                int card = deck.remove(deck.size() - 1);
+                counter.add(card);
+                board.add(card);
+            }
+            else {
+                int card = board.remove(random.nextInt(board.size()));
+                counter.remove(card);
+                deck.add(0, card);
+            }
+            assertEquals(universe.countSets(toArray(board), board.size(), Integer.MAX_VALUE), counter.sets());
+        }
+    }
+
+    @Test
+    void planTargeted_ReachesTargetRange() {
+        for (long seed = 0; seed < 20; seed++) {
+            List<Integer> deck = shuffledDeck(seed);
+            int[] cards = planner.planTargeted(new ArrayList<>(), deck, 12, 1, 1, 1_000_000_000L, new SplittableRandom(seed));
+
+            assertEquals(12, cards.length);
+            assertEquals(12, Arrays.stream(cards).distinct().count());
+            assertEquals(1, universe.countSets(cards, cards.length, Integer.MAX_VALUE));
+            assertEquals(1, planner.lastSets);
+        }
+    }
+}
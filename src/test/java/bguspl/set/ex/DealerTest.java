@@ -2,15 +2,31 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameRandom;
+import bguspl.set.GameThreadFactory;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 
 class DealerTest {
+    @TempDir
+    File directory;
+
     private Dealer dealer;
     private Table table;
     private Player[] players;
@@ -96,11 +112,99 @@ class DealerTest {
         for(Player player : players){
             assertEquals(0, player.actionsQueue.size());
             assertEquals(0, player.getTokens().size());
-            assertEquals(Player.Verdict.IRRELEVANT, player.answer);
         }
 
         //making sure setClaimers queue was cleared
         assertEquals(0, dealer.setClaimers.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void placeCardsOnTable_RandomModeDealsAsBefore() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealMode", "random");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        UtilImpl util = new UtilImpl(config);
+        long seed = 9; // the first deal of the seed has no set
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), util, new GameRandom(logger, seed));
+        Table table = new Table(env, new Integer[config.tableSize], new Integer[config.deckSize]);
+        Dealer dealer = new Dealer(env, table, new Player[0]);
+
+        // the cards drawn at random from the deck, reshuffled into it while the table has no set
+        SplittableRandom random = new GameRandom(logger, seed).split(); // the dealer's stream
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; card++)
+            deck.add(card);
+        List<Integer> expected = new ArrayList<>();
+        do {
+            deck.addAll(expected);
+            expected.clear();
+            for (int slot = 0; slot < config.tableSize; slot++)
+                expected.add(deck.remove(random.nextInt(deck.size())));
+        } while (util.findSets(expected, 1).isEmpty());
+
+        dealer.placeCardsOnTable();
+        for (int slot = 0; slot < config.tableSize; slot++)
+            assertEquals(expected.get(slot), table.slotToCard[slot]);
+        assertEquals(deck.size(), dealer.deckSize());
+        assertTrue(dealer.boardReady);
+    }
+
+    /**
+     * Runs a game without players on a virtual clock (moved to the dealer's wake-ups) until the countdown was displayed
+     * the given number of times.
+     *
+     * @return - the countdowns displayed.
+     */
+    private List<Long> countdowns(boolean journaled, int count) throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TurnTimeoutSeconds", "2");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        List<Long> countdowns = new CopyOnWriteArrayList<>();
+        TableTest.MockUserInterface ui = new TableTest.MockUserInterface() {
+            @Override
+            public void setCountdown(long millies, boolean warn) {
+                countdowns.add(millies);
+            }
+        };
+        VirtualClock clock = new VirtualClock(0);
+        Env env = new Env(logger, config, ui, new UtilImpl(config), new GameThreadFactory(logger, config),
+                new GameRandom(logger, 7), null, clock);
+        GameJournal journal = journaled ? GameJournal.open(new File(directory, "game.sgj"), clock, 7,
+                config.properties()) : GameJournal.DISABLED;
+        Dealer dealer = new Dealer(env, new Table(env), new Player[0], journal);
+
+        Thread thread = new Thread(dealer, "dealer");
+        thread.start();
+        while (thread.isAlive()) {
+            if (clock.waiting(thread)) { // the dealer waits for its next wake-up
+                if (countdowns.size() >= count) dealer.terminate();
+                clock.advanceTo(clock.nextDeadline());
+            }
+            thread.join(1);
+        }
+        return countdowns.subList(0, count);
+    }
+
+    @Test
+    void run_CountdownDoesntDependOnJournal() throws IOException, InterruptedException {
+        List<Long> countdowns = countdowns(false, 20);
+
+        // a few turns (the table is reshuffled when the countdown expires), counted down by the dealer's wake-ups
+        assertEquals(2000, (long) countdowns.get(0));
+        assertEquals(1500, (long) countdowns.get(2)); // displayed before it is counted down
+        assertEquals(countdowns, countdowns(true, 20));
+    }
+
+}
@@ -0,0 +1,98 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+    private EventRing ring;
+
+    @BeforeEach
+    void setUp() {
+        ring = new EventRing(4);
+    }
+
+    @Test
+    void drain_HandlesEventsInSequenceOrder() {
+        Claim claim = new Claim(1, new int[]{0, 1, 2}, new int[]{0, 1, 2}, 0, System.nanoTime());
+        assertEquals(0, ring.publishToken(0, 3, true));
+        assertEquals(1, ring.publishToken(0, 3, false));
+        assertEquals(2, ring.publishClaim(claim));
+
+        List<Integer> types = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        assertEquals(3, ring.drain(event -> {
+            types.add(event.type);
+            sequences.add(event.sequence());
+            if (event.type == EventRing.CLAIM) assertSame(claim, event.claim);
+        }));
+
+        assertEquals(EventRing.TOKEN_PLACED, (int) types.get(0));
+        assertEquals(EventRing.TOKEN_REMOVED, (int) types.get(1));
+        assertEquals(EventRing.CLAIM, (int) types.get(2));
+        assertEquals(0, (long) sequences.get(0));
+        assertEquals(2, (long) sequences.get(2));
+        assertEquals(3, ring.consumed());
+
+        // nothing is handled twice
+        assertEquals(0, ring.drain(event -> fail()));
+    }
+
+    @Test
+    void publishSet_PublishesTheLastTokenWithTheClaim() {
+        Claim claim = new Claim(1, new int[]{0, 1, 2}, new int[]{0, 1, 2}, 0, System.nanoTime());
+        ring.publishToken(1, 0, true);
+        assertEquals(2, ring.publishSet(2, claim));
+        assertTrue(ring.isPublished(3));
+
+        List<Integer> types = new ArrayList<>();
+        assertEquals(3, ring.drain(event -> {
+            types.add(event.type);
+            assertEquals(1, event.player);
+        }));
+        assertEquals(EventRing.TOKEN_PLACED, (int) types.get(1));
+        assertEquals(EventRing.CLAIM, (int) types.get(2));
+
+        // the claim wakes up the consumer
+        long start = System.currentTimeMillis();
+        ring.publishSet(1, claim);
+        ring.awaitEvents(5000);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    void publish_WrapsAroundTheRing() {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++)
+                ring.publishToken(i, i, true);
+            assertEquals(4, ring.drain(event -> {}));
+        }
+        assertEquals(12, ring.published());
+        assertEquals(12, ring.consumed());
+    }
+
+    @Test
+    void publish_ClosedRingIsFull() {
+        for (int i = 0; i < 4; i++)
+            ring.publishToken(0, i, true);
+        ring.close();
+
+        // the ring is full and no consumer will free it
+        assertEquals(-1, ring.publishToken(0, 0, true));
+    }
+
+    @Test
+    void awaitEvents_WokenByClaim() {
+        ring.publishClaim(new Claim(0, new int[0], new int[0], 0, System.nanoTime()));
+
+        // the claim was published before waiting, so the consumer doesn't wait at all
+        long start = System.currentTimeMillis();
+        ring.awaitEvents(5000);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}
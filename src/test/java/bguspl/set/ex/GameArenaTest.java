@@ -0,0 +1,77 @@
+package bguspl.set.ex;
+
+import bguspl.set.SetUniverse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameArenaTest {
+
+    private static final int GAMES = 200;
+
+    private SetUniverse universe;
+    private GameArena arena;
+    private ArenaEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        universe = SetUniverse.of(3, 4);
+        arena = new GameArena(GAMES, universe.deckSize(), 12, 2);
+        engine = new ArenaEngine(arena, universe, 0.5, 10_000);
+        for (int game = 0; game < GAMES; game++)
+            engine.start(game, game);
+    }
+
+    @Test
+    void start_DealsTableWithSet() {
+        for (int game = 0; game < GAMES; game++) {
+            int[] cards = new int[12];
+            for (int slot = 0; slot < 12; slot++) {
+                cards[slot] = arena.card(game, slot);
+                assertTrue(cards[slot] >= 0);
+            }
+            assertEquals(universe.deckSize() - 12, arena.deckCount(game));
+            assertTrue(universe.hasSet(cards, cards.length));
+        }
+    }
+
+    @Test
+    void run_GamesEndWithoutSetsAndKeepEveryCard() {
+        assertEquals(0, engine.run(0, GAMES, 1_000_000));
+
+        for (int game = 0; game < GAMES; game++) {
+            assertTrue(arena.isOver(game));
+            assertEquals(arena.sets(game), arena.score(game, 0) + arena.score(game, 1));
+
+            // every card is either left (on the table or in the deck) or was part of a set found
+            boolean[] seen = new boolean[universe.deckSize()];
+            int[] left = new int[universe.deckSize()];
+            int n = 0;
+            for (int slot = 0; slot < 12; slot++)
+                if (arena.card(game, slot) >= 0) left[n++] = arena.card(game, slot);
+            for (int i = 0; i < arena.deckCount(game); i++)
+                left[n++] = arena.deckCard(game, i);
+            for (int i = 0; i < n; i++) {
+                assertFalse(seen[left[i]]);
+                seen[left[i]] = true;
+            }
+            assertEquals(universe.deckSize(), n + 3 * arena.sets(game));
+            assertFalse(universe.hasSet(left, n));
+        }
+    }
+
+    @Test
+    void run_SameSeedSameGame() {
+        GameArena other = new GameArena(1, universe.deckSize(), 12, 2);
+        ArenaEngine otherEngine = new ArenaEngine(other, universe, 0.5, 10_000);
+        otherEngine.start(0, 7);
+        engine.run(0, GAMES, 1_000_000);
+        otherEngine.run(0, 1, 1_000_000);
+
+        assertEquals(arena.steps(7), other.steps(0));
+        assertEquals(arena.score(7, 0), other.score(0, 0));
+        assertEquals(arena.score(7, 1), other.score(0, 1));
+        assertEquals(arena.reshuffles(7), other.reshuffles(0));
+    }
+}
@@ -0,0 +1,105 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameRandom;
+import bguspl.set.GameThreadFactory;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.SimulatedClock;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameReplayTest {
+
+    private static final long SEED = 42;
+
+    @TempDir
+    File directory;
+
+    private TableTest.MockLogger logger;
+    private Properties properties;
+
+    @BeforeEach
+    void setUp() {
+        logger = new TableTest.MockLogger();
+        properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("Hints", "False");
+        properties.put("TurnTimeoutSeconds", "5");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        properties.put("PointFreezeSeconds", "1");
+        properties.put("PenaltyFreezeSeconds", "3");
+        properties.put("TableDelaySeconds", "0.05");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("ClockMode", "simulated");
+        properties.put("SimulatedClockPauseSeconds", "0.0002");
+        properties.put("DealerStallSeconds", "0");
+    }
+
+    /**
+     * Plays a game of computer players, journaled to the given file.
+     *
+     * @return - the scores of the game.
+     */
+    private int[] record(File file) throws IOException, InterruptedException {
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config),
+                new GameThreadFactory(logger, config), new GameRandom(logger, SEED), null,
+                new SimulatedClock(config.simulatedClockPauseNanos));
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, GameJournal.open(file, env.clock, SEED, config.properties()));
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join();
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].getScore();
+        return scores;
+    }
+
+    @Test
+    void run_ReproducesRecordedGame() throws IOException, InterruptedException {
+        File file = new File(directory, "game.sgj");
+        int[] scores = record(file);
+
+        GameReplay.Result result = new GameReplay(logger, file).run(0);
+
+        assertTrue(result.matched(), result.toString());
+        assertEquals(result.events, result.replayed);
+        assertArrayEquals(scores, result.recordedScores);
+        assertArrayEquals(scores, result.scores);
+        assertTrue(result.gameMillis > 0);
+    }
+
+    @Test
+    void run_ReportsFirstEventNotReproduced() throws IOException, InterruptedException {
+        Config config = new Config(logger, properties);
+        File file = new File(directory, "tampered.sgj");
+        GameJournal journal = GameJournal.open(file, new SimulatedClock(config.simulatedClockPauseNanos), SEED,
+                config.properties());
+        journal.deal(config.deckSize - 1); // the dealer deals from the whole deck
+        journal.close();
+
+        GameReplay.Result result = new GameReplay(logger, file).run(0);
+
+        assertFalse(result.matched());
+        assertEquals(0, result.replayed);
+        assertNotNull(result.divergence);
+        assertTrue(result.divergence.startsWith("event 0 "), result.divergence);
+    }
+}
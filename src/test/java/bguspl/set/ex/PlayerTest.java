@@ -11,6 +11,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Collections;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -64,9 +65,19 @@ class PlayerTest {
 
         // check that ui.setScore was called with the player's id and the correct score
         verify(ui).setScore(eq(player.id), eq(expectedScore));
+    }
+
+    @Test
+    void getTokens_WithoutInvalidatedSlots() {
+        player.tokens.add(3);
+        player.tokens.add(4);
+
+        // the dealer invalidates the slots of removed cards, the player's tokens on them are no longer relevant
+        player.actionsQueue.invalidate(new int[]{3});
+        assertEquals(Collections.singletonList(4), player.getTokens());
 
-        // check that answer was updated correctly
-        assertEquals(Player.Verdict.POINT, player.answer);
+        player.actionsQueue.clear();
+        assertTrue(player.getTokens().isEmpty());
     }
 
     @Test
@@ -80,22 +91,4 @@ class PlayerTest {
         // check that the boolean was changed correctly
         assertTrue(expected, String.valueOf(player.terminate));
     }
-
-    @Test
-    void penalty() {
-        // call the method we are testing
-        player.penalty();
-
-        // check that answer was updated correctly
-        assertEquals(Player.Verdict.PENALTY, player.answer);
-    }
-
-    @Test
-    void irrelevant() {
-        // call the method we are testing
-        player.irrelevant();
-
-        // check that answer was updated correctly
-        assertEquals(Player.Verdict.IRRELEVANT, player.answer);
-    }
 }
\ No newline at end of file
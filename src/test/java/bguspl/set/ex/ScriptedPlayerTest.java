@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScriptedPlayerTest {
+
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Dealer dealer;
+    @Mock
+    private Logger logger;
+
+    private Env env;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        // purposely do not find the configuration files (use defaults here).
+        env = new Env(logger, new Config(logger, (String) null), ui, util);
+        Integer[] slotToCard = new Integer[env.config.tableSize];
+        Integer[] cardToSlot = new Integer[env.config.deckSize];
+        table = new Table(env, slotToCard, cardToSlot);
+        // cards 0, 1 and 2 differ in the last feature only (a set), cards 4, 8, ... differ from them in more features
+        int[] cards = {40, 4, 0, 13, 1, 26, 2, 80};
+        for (int slot = 0; slot < cards.length; slot++) {
+            slotToCard[slot] = cards[slot];
+            cardToSlot[cards[slot]] = slot;
+        }
+    }
+
+    @Test
+    void claim_LegalClaimsAreSetsOnTheTable() {
+        ScriptedPlayer player = new ScriptedPlayer(env, dealer, table, 0, 1);
+        for (int i = 0; i < 100; i++) {
+            int[] slots = player.claim();
+            assertEquals(env.config.featureSize, slots.length);
+            int[] cards = Arrays.stream(slots).map(slot -> table.slotToCard[slot]).toArray();
+            assertEquals(3, Arrays.stream(cards).distinct().count());
+            assertTrue(env.universe.isSet(cards));
+        }
+    }
+
+    @Test
+    void claim_RandomClaimsAreDistinctCardsOnTheTable() {
+        ScriptedPlayer player = new ScriptedPlayer(env, dealer, table, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            int[] slots = player.claim();
+            assertEquals(3, Arrays.stream(slots).distinct().count());
+            for (int slot : slots)
+                assertNotNull(table.slotToCard[slot]);
+        }
+    }
+
+    @Test
+    void plan_RemovesOtherTokensAndPlacesMissingOnes() {
+        ScriptedPlayer player = new ScriptedPlayer(env, dealer, table, 0, 1);
+        player.tokens.add(5);
+        player.tokens.add(2);
+
+        assertArrayEquals(new int[]{5, 4, 6}, player.plan(new int[]{2, 4, 6}));
+    }
+
+    @Test
+    void claimAnswered_RecordsLatencyAndVerdict() {
+        ScriptedPlayer player = new ScriptedPlayer(env, dealer, table, 0, 1);
+
+        player.claimAnswered(Player.Verdict.POINT, 1000);
+        player.claimAnswered(Player.Verdict.PENALTY, 2000);
+
+        assertArrayEquals(new long[]{1000, 2000}, player.getLatencies());
+        assertArrayEquals(new int[]{1, 1, 0}, player.getVerdicts());
+    }
+}
@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchdogTest {
+
+    @TempDir
+    File directory;
+
+    private Env env;
+    private Dealer dealer;
+    private Player[] players;
+
+    private Watchdog watchdog(String stallSeconds) {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealerStallSeconds", stallSeconds);
+        properties.put("PlayerKeys1", "81,87,69,82,65,83,68,70,90,88,67,86");
+        properties.put("PlayerKeys2", "85,73,79,80,74,75,76,59,77,44,46,47");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new TableTest.MockUtil());
+        Table table = new Table(env, new Integer[config.tableSize], new Integer[config.deckSize]);
+        players = new Player[]{new Player(env, null, table, 0, true), new Player(env, null, table, 1, true)};
+        dealer = new Dealer(env, table, players);
+        return new Watchdog(env, dealer, table, players, directory);
+    }
+
+    private Claim pendingClaim(int player, double seconds) {
+        Claim claim = new Claim(player, new int[]{0, 1, 2}, new int[]{0, 1, 2}, 0,
+                System.nanoTime() - (long) (seconds * 1e9));
+        players[player].lastClaim = claim;
+        return claim;
+    }
+
+    private File[] dumps() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("stall-"));
+        return files == null ? new File[0] : files;
+    }
+
+    @Test
+    void freshGameIsNotStalled() {
+        Watchdog watchdog = watchdog("1");
+        assertNull(watchdog.check());
+    }
+
+    @Test
+    void silentDealerIsStalled() throws InterruptedException {
+        Watchdog watchdog = watchdog("0.05");
+        Thread.sleep(100);
+        String stall = watchdog.check();
+        assertNotNull(stall);
+        assertTrue(stall.contains("dealer"));
+    }
+
+    @Test
+    void playerWaitingForAVerdictIsStalled() {
+        Watchdog watchdog = watchdog("1");
+        pendingClaim(0, 0.5);
+        assertNull(watchdog.check()); // not waiting long enough yet
+
+        Claim claim = pendingClaim(1, 2);
+        String stall = watchdog.check();
+        assertNotNull(stall);
+        assertTrue(stall.contains("player 1"));
+        assertFalse(stall.contains("player 0"));
+
+        claim.complete(Player.Verdict.POINT);
+        assertNull(watchdog.check());
+    }
+
+    @Test
+    void stallIsDumpedOnceWhenItStarts() throws IOException, InterruptedException {
+        Watchdog watchdog = watchdog("1");
+        Claim claim = pendingClaim(1, 2);
+        watchdog.inspect();
+        watchdog.inspect(); // the same stall
+        assertEquals(1, dumps().length);
+
+        String dump = new String(Files.readAllBytes(dumps()[0].toPath()), StandardCharsets.UTF_8);
+        assertTrue(dump.contains("player 1 waiting for a verdict"));
+        assertTrue(dump.contains("claim of slots [0, 1, 2] pending"));
+        assertTrue(dump.contains("\"" + Thread.currentThread().getName() + "\"")); // the thread dump
+        assertTrue(dump.contains("deadlocked threads: none"));
+
+        claim.complete(Player.Verdict.PENALTY);
+        watchdog.inspect(); // the stall ended
+        Thread.sleep(5); // a new dump file name
+        pendingClaim(1, 2);
+        watchdog.inspect();
+        assertEquals(2, dumps().length);
+        assertEquals(2, env.metrics.counter(Metrics.DEALER, "stalls").get());
+    }
+
+    @Test
+    void disabledWatchdogNeverStarts() {
+        Watchdog watchdog = watchdog("0");
+        watchdog.start(); // no periodic check is scheduled
+        watchdog.stop();
+        assertEquals(0, dumps().length);
+    }
+}